@@ -0,0 +1,23 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.camera.LatencyHistogram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/** Stage timing recorded several times per frame, contended by all frame processor workers. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Threads(4)
+public class LatencyHistogramBenchmark {
+    private final LatencyHistogram mHistogram = new LatencyHistogram();
+
+    @Benchmark
+    public void record() {
+        mHistogram.record(System.nanoTime() & 0x3FFFFFF);
+    }
+}
@@ -0,0 +1,62 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.camera.LumaPyramid;
+import com.amolg.flutterbarcodescanner.camera.ScanRegion;
+import com.amolg.flutterbarcodescanner.camera.SceneChangeDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/** Per-frame buffer work done by the frame processor workers before detection. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class Nv21Benchmark {
+    @Param({"1280x720", "1920x1080"})
+    public String size;
+
+    private int mWidth;
+    private int mHeight;
+    private ByteBuffer mFrame;
+    private final ScanRegion mScanRegion = new ScanRegion();
+    private final int[] mCrop = new int[4];
+    private byte[] mCropBuffer;
+    private final LumaPyramid mPyramid = new LumaPyramid();
+    private final SceneChangeDetector mSceneChangeDetector = new SceneChangeDetector();
+    private final int[] mSignature = new int[SceneChangeDetector.SIGNATURE_SIZE];
+
+    @Setup
+    public void setUp() {
+        mWidth = SyntheticFrames.parseWidth(size);
+        mHeight = SyntheticFrames.parseHeight(size);
+        mFrame = ByteBuffer.wrap(SyntheticFrames.nv21(mWidth, mHeight, 42));
+        mScanRegion.setBounds(0.1f, 0.3f, 0.9f, 0.7f);
+        mCropBuffer = new byte[ScanRegion.getNv21Size(mWidth, mHeight)];
+
+        mSceneChangeDetector.isStatic(mFrame.array(), mWidth, mHeight, mSignature);
+        mSceneChangeDetector.onDecoded(mSignature);
+    }
+
+    @Benchmark
+    public byte[] cropToScanRegion() {
+        mScanRegion.computeCrop(mWidth, mHeight, 1, false, mCrop);
+        ScanRegion.cropNv21(mFrame.array(), mWidth, mHeight, mCrop, mCropBuffer);
+        return mCropBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer downsample() {
+        return mPyramid.downsample(mFrame, mWidth, mHeight);
+    }
+
+    @Benchmark
+    public boolean sceneSignature() {
+        return mSceneChangeDetector.isStatic(mFrame.array(), mWidth, mHeight, mSignature);
+    }
+}
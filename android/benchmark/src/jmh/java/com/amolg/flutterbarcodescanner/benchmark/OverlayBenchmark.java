@@ -0,0 +1,57 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.camera.OverlayTransform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Translating detected corner points into overlay coordinates for one drawn frame. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class OverlayBenchmark {
+    private static final int CORNERS = 4;
+
+    @Param({"1", "16"})
+    public int results;
+
+    @Param({"false", "true"})
+    public boolean mirrored;
+
+    private final OverlayTransform mTransform = new OverlayTransform();
+    private float[] mSource;
+    private float[] mPoints;
+
+    @Setup
+    public void setUp() {
+        mTransform.setScale(1.5f, 1.5f);
+        mTransform.setViewWidth(1080);
+        mTransform.setMirrored(mirrored);
+        mSource = new float[results * CORNERS * 2];
+        for (int i = 0; i < mSource.length; i++) {
+            mSource[i] = (i * 37) % 720;
+        }
+        mPoints = new float[mSource.length];
+    }
+
+    @Benchmark
+    public float[] mapPoints() {
+        System.arraycopy(mSource, 0, mPoints, 0, mSource.length);
+        mTransform.mapPoints(mPoints, results * CORNERS, 64, 128);
+        return mPoints;
+    }
+
+    /** The per-coordinate path graphics take when drawing a bounding box. */
+    @Benchmark
+    public void translateEach(Blackhole blackhole) {
+        for (int i = 0; i < mSource.length; i += 2) {
+            blackhole.consume(mTransform.translateX(mSource[i] + 64));
+            blackhole.consume(mTransform.translateY(mSource[i + 1] + 128));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.camera.PreviewSizes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Preview size selection as done on every camera (re)start, with a typical phone's size lists. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class PreviewSizeBenchmark {
+    private final int[] mPreviewSizes = {
+            1920, 1080, 1600, 1200, 1440, 1080, 1280, 960, 1280, 720, 1024, 768, 960, 720,
+            800, 600, 720, 480, 640, 480, 480, 320, 352, 288, 320, 240, 176, 144};
+    private final int[] mPictureSizes = {
+            4032, 3024, 4000, 3000, 4032, 2268, 3264, 2448, 3264, 1836, 2592, 1944, 2048, 1536,
+            1920, 1080, 1600, 1200, 1280, 960, 1280, 720, 1024, 768, 800, 600, 640, 480, 320, 240};
+    private final int[] mUnmatchedPictureSizes = {4000, 1800, 3000, 1350};
+
+    @Benchmark
+    public int selectSizePair() {
+        return PreviewSizes.selectPair(PreviewSizes.generateValidPairs(mPreviewSizes, mPictureSizes), 1600, 1024);
+    }
+
+    @Benchmark
+    public int selectSizePairWithoutPictureMatch() {
+        return PreviewSizes.selectPair(
+                PreviewSizes.generateValidPairs(mPreviewSizes, mUnmatchedPictureSizes), 1600, 1024);
+    }
+}
@@ -0,0 +1,51 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.ResultDeduplicator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Duplicate suppression on every continuous-scan result: the steady state of a few codes held
+ * in view, and a stream of distinct codes that keeps evicting from the LRU.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class ResultDedupBenchmark {
+    private static final int CAPACITY = 256;
+    private static final int IN_VIEW = 8;
+    private static final int FORMAT_QR_CODE = 256;
+
+    private final ResultDeduplicator mDeduplicator = new ResultDeduplicator(CAPACITY);
+    private final String[] mInView = new String[IN_VIEW];
+    private final String[] mDistinct = new String[CAPACITY * 4];
+    private long mNowMillis;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < mInView.length; i++) {
+            mInView[i] = "https://example.com/item/" + (100000 + i);
+        }
+        for (int i = 0; i < mDistinct.length; i++) {
+            mDistinct[i] = "0" + (4006381333931L + i);
+        }
+    }
+
+    @Benchmark
+    public boolean repeatedInView() {
+        mNowMillis += 4;
+        return mDeduplicator.shouldDeliver(FORMAT_QR_CODE, mInView[mNext++ & (IN_VIEW - 1)], mNowMillis);
+    }
+
+    @Benchmark
+    public boolean distinctStream() {
+        mNowMillis += 4;
+        mNext = (mNext + 1) % mDistinct.length;
+        return mDeduplicator.shouldDeliver(FORMAT_QR_CODE, mDistinct[mNext], mNowMillis);
+    }
+}
@@ -0,0 +1,74 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.camera.SpatialIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Rebuilding the overlay hit-test index per frame and the tap and drag queries against it. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class SpatialIndexBenchmark {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({"4", "64", "512"})
+    public int codes;
+
+    private final List<Integer> mItems = new ArrayList<>();
+    private final List<Integer> mFound = new ArrayList<>();
+    private float[] mBoxes;
+    private SpatialIndex<Integer> mIndex;
+    private int mQuery;
+
+    @Setup
+    public void setUp() {
+        // A grid of labels, like a shelf or a sheet of asset tags.
+        int columns = (int) Math.ceil(Math.sqrt(codes));
+        float cellWidth = (float) VIEW_WIDTH / columns;
+        float cellHeight = (float) VIEW_HEIGHT / columns;
+        mBoxes = new float[codes * 4];
+        for (int i = 0; i < codes; i++) {
+            float left = (i % columns) * cellWidth;
+            float top = (i / columns) * cellHeight;
+            mBoxes[i * 4] = left + cellWidth * 0.1f;
+            mBoxes[i * 4 + 1] = top + cellHeight * 0.1f;
+            mBoxes[i * 4 + 2] = left + cellWidth * 0.9f;
+            mBoxes[i * 4 + 3] = top + cellHeight * 0.9f;
+            mItems.add(i);
+        }
+        mIndex = new SpatialIndex<>(mItems, mBoxes, codes);
+    }
+
+    @Benchmark
+    public SpatialIndex<Integer> build() {
+        return new SpatialIndex<>(mItems, mBoxes, codes);
+    }
+
+    @Benchmark
+    public Integer findAt() {
+        int query = mQuery++ & 1023;
+        return mIndex.findAt((query * 37) % VIEW_WIDTH, (query * 61) % VIEW_HEIGHT);
+    }
+
+    @Benchmark
+    public Integer findNearest() {
+        int query = mQuery++ & 1023;
+        return mIndex.findNearest((query * 37) % VIEW_WIDTH, (query * 61) % VIEW_HEIGHT, Float.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<Integer> findIntersecting() {
+        mFound.clear();
+        mIndex.findIntersecting(VIEW_WIDTH * 0.25f, VIEW_HEIGHT * 0.25f, VIEW_WIDTH * 0.5f, VIEW_HEIGHT * 0.5f, mFound);
+        return mFound;
+    }
+}
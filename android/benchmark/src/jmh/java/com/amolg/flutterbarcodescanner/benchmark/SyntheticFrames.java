@@ -0,0 +1,33 @@
+package com.amolg.flutterbarcodescanner.benchmark;
+
+import com.amolg.flutterbarcodescanner.camera.ScanRegion;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Deterministic NV21 fixtures: a lit gradient with a 1D barcode-like bar pattern and sensor noise. */
+final class SyntheticFrames {
+    private SyntheticFrames() {}
+
+    static byte[] nv21(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] frame = new byte[ScanRegion.getNv21Size(width, height)];
+        int barLeft = width / 4, barRight = width * 3 / 4;
+        int barTop = height * 2 / 5, barBottom = height * 3 / 5;
+        int barWidth = Math.max(2, width / 160);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int luma = 90 + 80 * x / width + random.nextInt(9) - 4;
+                if (x >= barLeft && x < barRight && y >= barTop && y < barBottom) {
+                    luma = ((x - barLeft) / barWidth) % 3 == 0 ? 20 : 230;
+                }
+                frame[y * width + x] = (byte) luma;
+            }
+        }
+        Arrays.fill(frame, width * height, frame.length, (byte) 128);
+        return frame;
+    }
+
+    static int parseWidth(String size) { return Integer.parseInt(size.substring(0, size.indexOf('x'))); }
+    static int parseHeight(String size) { return Integer.parseInt(size.substring(size.indexOf('x') + 1)); }
+}
@@ -5,18 +5,23 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.graphics.RectF;
 import android.hardware.Camera;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.Toast;
@@ -25,18 +30,30 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 
+import com.amolg.flutterbarcodescanner.camera.Camera2Source;
 import com.amolg.flutterbarcodescanner.camera.CameraSource;
 import com.amolg.flutterbarcodescanner.camera.CameraSourcePreview;
+import com.amolg.flutterbarcodescanner.camera.FrameQualityGate;
+import com.amolg.flutterbarcodescanner.camera.FrameRecorder;
+import com.amolg.flutterbarcodescanner.camera.FrameStampProcessor;
+import com.amolg.flutterbarcodescanner.camera.FrameSource;
 import com.amolg.flutterbarcodescanner.camera.GraphicOverlay;
+import com.amolg.flutterbarcodescanner.camera.ScanRegion;
+import com.amolg.flutterbarcodescanner.camera.SceneChangeDetector;
+import com.amolg.flutterbarcodescanner.camera.TiledDecoder;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.MultiProcessor;
 import com.google.android.gms.vision.barcode.Barcode;
 import com.google.android.gms.vision.barcode.BarcodeDetector;
 import com.google.android.material.snackbar.Snackbar;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class BarcodeCaptureActivity extends AppCompatActivity
         implements BarcodeGraphicTracker.BarcodeUpdateListener, View.OnClickListener {
@@ -44,14 +61,33 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
     private static final int RC_HANDLE_GMS = 9001;
     private static final int RC_HANDLE_CAMERA_PERM = 2;
 
+    private static final int TILE_COLUMNS = 3;
+    private static final int TILE_ROWS = 2;
+    private static final float TILE_OVERLAP = 0.15f;
+
     public static final String BarcodeObject = "Barcode";
+    public static final String BatchResults = "BatchResults";
 
-    private CameraSource mCameraSource;
+    private FrameSource mCameraSource;
     private CameraSourcePreview mPreview;
     private GraphicOverlay<BarcodeGraphic> mGraphicOverlay;
+    private ScanRegion mScanRegion;
+    private FrameStampProcessor<Barcode> mResultStamps;
+    private FrameRecorder mFrameRecorder;
+    private final FrameQualityGate mQualityGate = new FrameQualityGate();
+    private final ScannerWarmPool mWarmPool = ScannerWarmPool.get();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mBatchTimeout = this::finishBatch;
+    private BatchCapture mBatch;
+    private BarcodeDetector mDetector;
 
     private ScaleGestureDetector scaleGestureDetector;
     private GestureDetector gestureDetector;
+    private final int[] mOverlayLocation = new int[2];
+    private final RectF mDragRect = new RectF();
+    private float mDragStartX = Float.NaN, mDragStartY;
+    private boolean mDragging;
+    private int mTouchSlop;
 
     private ImageView imgViewBarcodeCaptureUseFlash;
     private ImageView imgViewSwitchCamera;
@@ -74,6 +110,7 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        mWarmPool.onSessionStarted();
         try {
             setContentView(R.layout.barcode_capture);
 
@@ -98,8 +135,18 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
             imgViewSwitchCamera = findViewById(R.id.imgViewSwitchCamera);
             imgViewSwitchCamera.setOnClickListener(this);
 
+            if (FlutterBarcodeScannerPlugin.isBatchCapture) {
+                mBatch = new BatchCapture(FlutterBarcodeScannerPlugin.captureTargetCount,
+                        FlutterBarcodeScannerPlugin.captureStableFrames);
+                mMainHandler.postDelayed(mBatchTimeout, FlutterBarcodeScannerPlugin.captureTimeoutMillis);
+            }
+
             mPreview = findViewById(R.id.preview);
             mGraphicOverlay = findViewById(R.id.graphicOverlay);
+            if (FlutterBarcodeScannerPlugin.isScanRegionOnly) {
+                mScanRegion = new ScanRegion();
+                mGraphicOverlay.setScanRegion(mScanRegion);
+            }
 
             boolean autoFocus = true;
             boolean useFlash = false;
@@ -113,6 +160,7 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
 
             gestureDetector = new GestureDetector(this, new CaptureGestureListener());
             scaleGestureDetector = new ScaleGestureDetector(this, new ScaleListener());
+            mTouchSlop = ViewConfiguration.get(this).getScaledTouchSlop();
 
         } catch (Exception ignored) { }
     }
@@ -139,16 +187,77 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
 
     @Override
     public boolean onTouchEvent(MotionEvent e) {
+        boolean a = onDragSelect(e);
         boolean b = scaleGestureDetector.onTouchEvent(e);
         boolean c = gestureDetector.onTouchEvent(e);
-        return b || c || super.onTouchEvent(e);
+        return a || b || c || super.onTouchEvent(e);
+    }
+
+    /** Tracks a one-finger drag past the touch slop and selects the codes inside its rectangle. */
+    private boolean onDragSelect(MotionEvent e) {
+        mGraphicOverlay.getLocationOnScreen(mOverlayLocation);
+        float x = e.getRawX() - mOverlayLocation[0];
+        float y = e.getRawY() - mOverlayLocation[1];
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDragStartX = x;
+                mDragStartY = y;
+                mDragging = false;
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                if (Float.isNaN(mDragStartX)) return false;
+                if (!mDragging && Math.hypot(x - mDragStartX, y - mDragStartY) < mTouchSlop) return false;
+                mDragging = true;
+                mDragRect.set(Math.min(mDragStartX, x), Math.min(mDragStartY, y),
+                        Math.max(mDragStartX, x), Math.max(mDragStartY, y));
+                mGraphicOverlay.setSelectionRect(mDragRect);
+                return true;
+            case MotionEvent.ACTION_UP:
+                boolean selected = mDragging;
+                cancelDrag();
+                if (selected) onCodesSelected(mGraphicOverlay.findGraphicsIn(mDragRect));
+                return selected;
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_CANCEL:
+                // A second finger means pinch-to-zoom, not a selection.
+                cancelDrag();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void cancelDrag() {
+        if (mDragging) mGraphicOverlay.setSelectionRect(null);
+        mDragStartX = Float.NaN;
+        mDragging = false;
+    }
+
+    private void onCodesSelected(List<BarcodeGraphic> graphics) {
+        List<Barcode> barcodes = new ArrayList<>(graphics.size());
+        for (BarcodeGraphic graphic : graphics) {
+            Barcode barcode = graphic.getBarcode();
+            if (barcode != null) barcodes.add(barcode);
+        }
+        if (barcodes.isEmpty() || mBatch != null) return;
+        if (FlutterBarcodeScannerPlugin.isContinuousScan) {
+            FlutterBarcodeScannerPlugin.onBarcodesSelected(barcodes, mResultStamps.getFrameId(),
+                    mResultStamps.getTimestampMillis(),
+                    mGraphicOverlay.getScanOffsetX(), mGraphicOverlay.getScanOffsetY());
+        } else {
+            finishWithBarcode(barcodes.get(0));
+        }
     }
 
     @SuppressLint("InlinedApi")
     private void createCameraSource(boolean autoFocus, boolean useFlash, int cameraFacing) {
-        BarcodeDetector barcodeDetector = new BarcodeDetector.Builder(getApplicationContext()).build();
+        BarcodeDetector barcodeDetector =
+                mWarmPool.acquireDetector(getApplicationContext(), FlutterBarcodeScannerPlugin.barcodeFormats);
+        BarcodeDetector previousDetector = mDetector;
+        mDetector = barcodeDetector;
         BarcodeTrackerFactory barcodeFactory = new BarcodeTrackerFactory(mGraphicOverlay, this);
-        barcodeDetector.setProcessor(new MultiProcessor.Builder<>(barcodeFactory).build());
+        mResultStamps = new FrameStampProcessor<>(new MultiProcessor.Builder<>(barcodeFactory).build());
+        mResultStamps.setDeliveryListener(this::onFrameDelivered);
 
         if (!barcodeDetector.isOperational()) {
             IntentFilter lowstorageFilter = new IntentFilter(Intent.ACTION_DEVICE_STORAGE_LOW);
@@ -158,21 +267,73 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
             }
         }
 
-        CameraSource.Builder builder = new CameraSource.Builder(getApplicationContext(), barcodeDetector)
+        if (mCameraSource != null) {
+            mCameraSource.stop();
+            mCameraSource.release();
+        }
+        if (previousDetector != null) mWarmPool.releaseDetector(previousDetector);
+
+        final Context appContext = getApplicationContext();
+        final int formats = FlutterBarcodeScannerPlugin.barcodeFormats;
+        TiledDecoder<Barcode> tiledDecoder = FlutterBarcodeScannerPlugin.isTiledScan && TiledDecoder.isSupported()
+                ? new TiledDecoder<>(new BarcodeDetectionMapper(),
+                        () -> new BarcodeDetector.Builder(appContext).setBarcodeFormats(formats).build(),
+                        TILE_COLUMNS, TILE_ROWS, TILE_OVERLAP, Runtime.getRuntime().availableProcessors())
+                : null;
+        SceneChangeDetector sceneChangeDetector =
+                FlutterBarcodeScannerPlugin.isContinuousScan ? new SceneChangeDetector() : null;
+        String recordPath = FlutterBarcodeScannerPlugin.recordFramesTo;
+        if (recordPath != null && mFrameRecorder == null) {
+            try {
+                mFrameRecorder = new FrameRecorder(new File(recordPath));
+            } catch (IOException e) {
+                Log.e("BarcodeCaptureActivity", "Could not record frames to " + recordPath, e);
+            }
+        }
+
+        if (FlutterBarcodeScannerPlugin.useCamera2 && Camera2Source.isSupported()) {
+            mCameraSource = new Camera2Source.Builder(getApplicationContext(), barcodeDetector, mResultStamps)
+                    .setProcessingThreadCount(CameraSource.DEFAULT_PROCESSING_THREADS)
+                    .setDetectorShared(true)
+                    .setFirstFrameListener(mWarmPool::onFirstFrame)
+                    .setFacing(cameraFacing)
+                    .setRequestedPreviewSize(1600, 1024)
+                    .setRequestedFps(30.0f)
+                    .setAdaptiveFrameRate(true)
+                    .setLumaPyramid(new BarcodeDetectionMapper())
+                    .setTiledDecoder(tiledDecoder)
+                    .setQualityGate(mQualityGate)
+                    .setSceneChangeDetector(sceneChangeDetector)
+                    .setFrameRecorder(mFrameRecorder)
+                    .setScanRegion(mScanRegion)
+                    .setTorch(useFlash)
+                    .setContinuousFocus(autoFocus)
+                    .build();
+            return;
+        }
+
+        CameraSource.Builder builder = new CameraSource.Builder(getApplicationContext(), barcodeDetector, mResultStamps)
+                .setProcessingThreadCount(CameraSource.DEFAULT_PROCESSING_THREADS)
+                .setDetectorShared(true)
+                .setFirstFrameListener(mWarmPool::onFirstFrame)
+                .setCameraProvider(mWarmPool.getCameraWarmer())
                 .setFacing(cameraFacing)
                 .setRequestedPreviewSize(1600, 1024)
                 .setRequestedFps(30.0f)
+                .setAdaptiveFrameRate(true)
+                .setLumaPyramid(new BarcodeDetectionMapper())
+                .setTiledDecoder(tiledDecoder)
+                .setQualityGate(mQualityGate)
+                .setSceneChangeDetector(sceneChangeDetector)
+                .setFrameRecorder(mFrameRecorder)
+                .setScanRegion(mScanRegion)
+                .setPreviewBufferRing(mWarmPool.getPreviewBuffers())
                 .setFlashMode(useFlash ? Camera.Parameters.FLASH_MODE_TORCH : null);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
             builder = builder.setFocusMode(
                     autoFocus ? Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE : null);
         }
-
-        if (mCameraSource != null) {
-            mCameraSource.stop();
-            mCameraSource.release();
-        }
         mCameraSource = builder.build();
     }
 
@@ -180,6 +341,7 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
     protected void onResume() {
         super.onResume();
         startCameraSource();
+        if (mGraphicOverlay != null) mGraphicOverlay.startLaser();
     }
 
     @Override
@@ -188,14 +350,29 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
         if (mPreview != null) {
             mPreview.stop();
         }
+        if (mGraphicOverlay != null) mGraphicOverlay.stopLaser();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mMainHandler.removeCallbacks(mBatchTimeout);
         if (mPreview != null) {
             mPreview.release();
         }
+        if (mDetector != null) {
+            mWarmPool.releaseDetector(mDetector);
+            mDetector = null;
+        }
+        if (mFrameRecorder != null) {
+            try {
+                mFrameRecorder.close();
+            } catch (IOException e) {
+                Log.e("BarcodeCaptureActivity", "Failed to close frame recording", e);
+            }
+        }
+        mWarmPool.onSessionEnded();
+        if (FlutterBarcodeScannerPlugin.isContinuousScan) FlutterBarcodeScannerPlugin.onScanSessionEnded();
     }
 
     @Override
@@ -238,40 +415,43 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
                 mCameraSource = null;
             }
         }
-        System.gc();
     }
 
-    private boolean onTap(float rawX, float rawY) {
-        int[] location = new int[2];
-        mGraphicOverlay.getLocationOnScreen(location);
-        float x = (rawX - location[0]) / mGraphicOverlay.getWidthScaleFactor();
-        float y = (rawY - location[1]) / mGraphicOverlay.getHeightScaleFactor();
-
-        Barcode best = null;
-        float bestDistance = Float.MAX_VALUE;
-        for (BarcodeGraphic graphic : mGraphicOverlay.getGraphics()) {
-            Barcode barcode = graphic.getBarcode();
-            if (barcode.getBoundingBox().contains((int) x, (int) y)) {
-                best = barcode;
-                break;
-            }
-            float dx = x - barcode.getBoundingBox().centerX();
-            float dy = y - barcode.getBoundingBox().centerY();
-            float distance = (dx * dx) + (dy * dy);
-            if (distance < bestDistance) {
-                best = barcode;
-                bestDistance = distance;
-            }
+    /** Runs on the detector thread once the trackers have seen a frame's detections. */
+    private void onFrameDelivered(Detector.Detections<Barcode> detections) {
+        mGraphicOverlay.rebuildIndex();
+        if (mBatch != null && mBatch.onFrame(detections.getDetectedItems(),
+                mResultStamps.getFrameId(), mResultStamps.getTimestampMillis(),
+                mGraphicOverlay.getScanOffsetX(), mGraphicOverlay.getScanOffsetY())) {
+            runOnUiThread(this::finishBatch);
         }
+    }
 
-        if (best != null) {
-            Intent data = new Intent();
-            data.putExtra(BarcodeObject, best);
-            setResult(CommonStatusCodes.SUCCESS, data);
-            finish();
-            return true;
-        }
-        return false;
+    /** Returns every code collected so far; on timeout this may be none. */
+    private void finishBatch() {
+        if (isFinishing()) return;
+        mBatch.complete();
+        Intent data = new Intent();
+        data.putExtra(BatchResults, mBatch.getResults());
+        setResult(CommonStatusCodes.SUCCESS, data);
+        finish();
+    }
+
+    private boolean onTap(float rawX, float rawY) {
+        if (mBatch != null) return false;
+        mGraphicOverlay.getLocationOnScreen(mOverlayLocation);
+        BarcodeGraphic graphic = mGraphicOverlay.findGraphicAt(rawX - mOverlayLocation[0], rawY - mOverlayLocation[1]);
+        Barcode best = graphic != null ? graphic.getBarcode() : null;
+        if (best == null) return false;
+        finishWithBarcode(best);
+        return true;
+    }
+
+    private void finishWithBarcode(Barcode barcode) {
+        Intent data = new Intent();
+        data.putExtra(BarcodeObject, barcode);
+        setResult(CommonStatusCodes.SUCCESS, data);
+        finish();
     }
 
     @Override
@@ -294,14 +474,11 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
                 Log.e("BarcodeCaptureActivity", "FlashOnFailure: " + e.getLocalizedMessage());
             }
         } else if (i == R.id.btnBarcodeCaptureCancel) {
-            Barcode barcode = new Barcode();
-            barcode.rawValue = "-1";
-            barcode.displayValue = "-1";
-            FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode);
+            FlutterBarcodeScannerPlugin.onScanCancelled();
             finish();
         } else if (i == R.id.imgViewSwitchCamera) {
             int currentFacing = mCameraSource.getCameraFacing();
-            boolean autoFocus = mCameraSource.getFocusMode() != null;
+            boolean autoFocus = mCameraSource.isContinuousFocus();
             boolean useFlash = flashStatus == USE_FLASH.ON.ordinal();
             createCameraSource(autoFocus, useFlash, getInverseCameraFacing(currentFacing));
             startCameraSource();
@@ -317,11 +494,7 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
     private void turnOnOffFlashLight(boolean isFlashToBeTurnOn) {
         try {
             if (getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_FLASH)) {
-                String flashMode = isFlashToBeTurnOn
-                        ? Camera.Parameters.FLASH_MODE_TORCH
-                        : Camera.Parameters.FLASH_MODE_OFF;
-
-                mCameraSource.setFlashMode(flashMode);
+                mCameraSource.setTorch(isFlashToBeTurnOn);
             } else {
                 Toast.makeText(getBaseContext(), "Unable to access flashlight as flashlight not available", Toast.LENGTH_SHORT).show();
             }
@@ -347,14 +520,14 @@ public final class BarcodeCaptureActivity extends AppCompatActivity
 
     @Override
     public void onBarcodeDetected(Barcode barcode) {
-        if (barcode != null) {
+        // A batch capture collects whole frames in onFrameDelivered instead.
+        if (barcode != null && mBatch == null) {
             if (FlutterBarcodeScannerPlugin.isContinuousScan) {
-                FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode);
+                FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode, mResultStamps.getFrameId(),
+                        mResultStamps.getTimestampMillis(),
+                        mGraphicOverlay.getScanOffsetX(), mGraphicOverlay.getScanOffsetY());
             } else {
-                Intent data = new Intent();
-                data.putExtra(BarcodeObject, barcode);
-                setResult(CommonStatusCodes.SUCCESS, data);
-                finish();
+                finishWithBarcode(barcode);
             }
         }
     }
@@ -0,0 +1,41 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.graphics.Point;
+
+import com.amolg.flutterbarcodescanner.camera.DetectionMerger;
+import com.google.android.gms.vision.barcode.Barcode;
+
+class BarcodeDetectionMapper implements DetectionMerger<Barcode> {
+    @Override
+    public void map(Barcode barcode, float scale, int offsetX, int offsetY) {
+        if (barcode.cornerPoints == null) return;
+        for (Point point : barcode.cornerPoints) {
+            point.x = Math.round(point.x * scale) + offsetX;
+            point.y = Math.round(point.y * scale) + offsetY;
+        }
+    }
+
+    @Override
+    public boolean getBounds(Barcode barcode, int[] out, int offset) {
+        if (barcode.cornerPoints == null || barcode.cornerPoints.length == 0) return false;
+        Point first = barcode.cornerPoints[0];
+        int left = first.x, top = first.y, right = first.x, bottom = first.y;
+        for (Point point : barcode.cornerPoints) {
+            left = Math.min(left, point.x);
+            top = Math.min(top, point.y);
+            right = Math.max(right, point.x);
+            bottom = Math.max(bottom, point.y);
+        }
+        out[offset] = left;
+        out[offset + 1] = top;
+        out[offset + 2] = right;
+        out[offset + 3] = bottom;
+        return true;
+    }
+
+    /** Same value and format; with intersecting bounds that is one code seen by two tiles. */
+    @Override
+    public boolean isSameDetection(Barcode first, Barcode second) {
+        return first.format == second.format && first.rawValue != null && first.rawValue.equals(second.rawValue);
+    }
+}
@@ -0,0 +1,53 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.util.Log;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.util.List;
+
+/** Resolves the scan mode and format names sent from Dart into a BarcodeDetector format mask. */
+final class BarcodeFormats {
+    private static final String TAG = "BarcodeFormats";
+
+    static final int LINEAR_FORMATS = Barcode.CODE_128 | Barcode.CODE_39 | Barcode.CODE_93 | Barcode.CODABAR
+            | Barcode.EAN_13 | Barcode.EAN_8 | Barcode.ITF | Barcode.UPC_A | Barcode.UPC_E;
+
+    private BarcodeFormats() {}
+
+    /** Explicit format names win over the scan mode; unknown names are ignored. */
+    static int resolve(int scanMode, List<?> formatNames) {
+        int formats = 0;
+        if (formatNames != null) {
+            for (Object name : formatNames) {
+                int format = name instanceof String ? fromName((String) name) : 0;
+                if (format == 0) Log.w(TAG, "Ignoring unknown barcode format: " + name);
+                formats |= format;
+            }
+        }
+        if (formats != 0) return formats;
+
+        if (scanMode == BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal()) return Barcode.QR_CODE;
+        if (scanMode == BarcodeCaptureActivity.SCAN_MODE_ENUM.BARCODE.ordinal()) return LINEAR_FORMATS;
+        return Barcode.ALL_FORMATS;
+    }
+
+    static int fromName(String name) {
+        switch (name) {
+            case "CODE_128": return Barcode.CODE_128;
+            case "CODE_39": return Barcode.CODE_39;
+            case "CODE_93": return Barcode.CODE_93;
+            case "CODABAR": return Barcode.CODABAR;
+            case "DATA_MATRIX": return Barcode.DATA_MATRIX;
+            case "EAN_13": return Barcode.EAN_13;
+            case "EAN_8": return Barcode.EAN_8;
+            case "ITF": return Barcode.ITF;
+            case "QR_CODE": return Barcode.QR_CODE;
+            case "UPC_A": return Barcode.UPC_A;
+            case "UPC_E": return Barcode.UPC_E;
+            case "PDF417": return Barcode.PDF417;
+            case "AZTEC": return Barcode.AZTEC;
+            default: return 0;
+        }
+    }
+}
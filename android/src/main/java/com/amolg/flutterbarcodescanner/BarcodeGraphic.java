@@ -3,11 +3,18 @@ package com.amolg.flutterbarcodescanner;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Point;
 import android.graphics.RectF;
 
 import com.amolg.flutterbarcodescanner.camera.GraphicOverlay;
 import com.google.android.gms.vision.barcode.Barcode;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Box and label of one tracked barcode. Paints come from a palette shared by all graphics and
+ * the box is computed into a reused rect, so drawing does not allocate.
+ */
 public class BarcodeGraphic extends GraphicOverlay.Graphic {
 
     private int mId;
@@ -18,26 +25,31 @@ public class BarcodeGraphic extends GraphicOverlay.Graphic {
             Color.GREEN
     };
 
-    private static int mCurrentColorIndex = 0;
+    private static final Paint[] RECT_PAINTS = new Paint[COLOR_CHOICES.length];
+    private static final Paint[] TEXT_PAINTS = new Paint[COLOR_CHOICES.length];
 
-    private final Paint mRectPaint;
-    private final Paint mTextPaint;
-    private volatile Barcode mBarcode;
+    static {
+        for (int i = 0; i < COLOR_CHOICES.length; i++) {
+            RECT_PAINTS[i] = new Paint();
+            RECT_PAINTS[i].setColor(COLOR_CHOICES[i]);
+            RECT_PAINTS[i].setStyle(Paint.Style.STROKE);
+            RECT_PAINTS[i].setStrokeWidth(4.0f);
 
-    BarcodeGraphic(GraphicOverlay overlay) {
-        super(overlay);
+            TEXT_PAINTS[i] = new Paint();
+            TEXT_PAINTS[i].setColor(COLOR_CHOICES[i]);
+            TEXT_PAINTS[i].setTextSize(36.0f);
+        }
+    }
 
-        mCurrentColorIndex = (mCurrentColorIndex + 1) % COLOR_CHOICES.length;
-        final int selectedColor = COLOR_CHOICES[mCurrentColorIndex];
+    private static final AtomicInteger sNextColorIndex = new AtomicInteger();
 
-        mRectPaint = new Paint();
-        mRectPaint.setColor(selectedColor);
-        mRectPaint.setStyle(Paint.Style.STROKE);
-        mRectPaint.setStrokeWidth(4.0f);
+    private final int mColorIndex;
+    private final RectF mRect = new RectF();
+    private volatile Barcode mBarcode;
 
-        mTextPaint = new Paint();
-        mTextPaint.setColor(selectedColor);
-        mTextPaint.setTextSize(36.0f);
+    BarcodeGraphic(GraphicOverlay overlay) {
+        super(overlay);
+        mColorIndex = (sNextColorIndex.incrementAndGet() & Integer.MAX_VALUE) % COLOR_CHOICES.length;
     }
 
     public int getId() {
@@ -52,25 +64,49 @@ public class BarcodeGraphic extends GraphicOverlay.Graphic {
         return mBarcode;
     }
 
+    /** Forgets the tracked code before the graphic goes back to the tracker pool. */
+    void reset() {
+        mId = 0;
+        mBarcode = null;
+    }
+
     void updateItem(Barcode barcode) {
         mBarcode = barcode;
         postInvalidate();
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        Barcode barcode = mBarcode;
-        if (barcode == null) {
-            return;
+    public boolean getBounds(RectF out) { return getBounds(mBarcode, out); }
+
+    /** Bounds of the given code, so callers that already read {@link #mBarcode} use that same value. */
+    private boolean getBounds(Barcode barcode, RectF out) {
+        if (barcode == null || barcode.cornerPoints == null || barcode.cornerPoints.length == 0) {
+            return false;
+        }
+
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+        for (Point corner : barcode.cornerPoints) {
+            left = Math.min(left, corner.x);
+            top = Math.min(top, corner.y);
+            right = Math.max(right, corner.x);
+            bottom = Math.max(bottom, corner.y);
         }
+        out.set(translateX(left), translateY(top), translateX(right), translateY(bottom));
+        // Mirroring for the front camera swaps left and right.
+        out.sort();
+        return true;
+    }
 
-        RectF rect = new RectF(barcode.getBoundingBox());
-        rect.left = translateX(rect.left);
-        rect.top = translateY(rect.top);
-        rect.right = translateX(rect.right);
-        rect.bottom = translateY(rect.bottom);
-        canvas.drawRect(rect, mRectPaint);
+    @Override
+    public void draw(Canvas canvas) {
+        // Read once: trackers replace or clear the code while the UI thread draws.
+        Barcode barcode = mBarcode;
+        if (!getBounds(barcode, mRect)) return;
+        canvas.drawRect(mRect, RECT_PAINTS[mColorIndex]);
 
-        canvas.drawText(barcode.rawValue, rect.left, rect.bottom, mTextPaint);
+        if (barcode.rawValue != null) {
+            canvas.drawText(barcode.rawValue, mRect.left, mRect.bottom, TEXT_PAINTS[mColorIndex]);
+        }
     }
 }
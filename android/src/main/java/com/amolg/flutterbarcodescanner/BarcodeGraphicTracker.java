@@ -9,9 +9,14 @@ import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.barcode.Barcode;
 
+/**
+ * Draws one tracked barcode. Trackers are reused: once the detector stops tracking the code,
+ * the tracker and its graphic are reset and returned to the factory's pool.
+ */
 public class BarcodeGraphicTracker extends Tracker<Barcode> {
     private final GraphicOverlay<BarcodeGraphic> mOverlay;
     private final BarcodeGraphic mGraphic;
+    private final BarcodeTrackerFactory mPool;
 
     private BarcodeUpdateListener mBarcodeUpdateListener;
 
@@ -20,9 +25,11 @@ public class BarcodeGraphicTracker extends Tracker<Barcode> {
         void onBarcodeDetected(Barcode barcode);
     }
 
-    BarcodeGraphicTracker(GraphicOverlay<BarcodeGraphic> mOverlay, BarcodeGraphic mGraphic, Context context) {
+    BarcodeGraphicTracker(GraphicOverlay<BarcodeGraphic> mOverlay, BarcodeGraphic mGraphic, Context context,
+                          BarcodeTrackerFactory mPool) {
         this.mOverlay = mOverlay;
         this.mGraphic = mGraphic;
+        this.mPool = mPool;
         if (context instanceof BarcodeUpdateListener) {
             this.mBarcodeUpdateListener = (BarcodeUpdateListener) context;
         } else {
@@ -40,6 +47,7 @@ public class BarcodeGraphicTracker extends Tracker<Barcode> {
     public void onUpdate(Detector.Detections<Barcode> detectionResults, Barcode item) {
         mOverlay.add(mGraphic);
         mGraphic.updateItem(item);
+        if (FlutterBarcodeScannerPlugin.isContinuousScan) FlutterBarcodeScannerPlugin.onBarcodeSeen(item);
     }
 
     @Override
@@ -50,5 +58,7 @@ public class BarcodeGraphicTracker extends Tracker<Barcode> {
     @Override
     public void onDone() {
         mOverlay.remove(mGraphic);
+        mGraphic.reset();
+        mPool.recycle(this);
     }
 }
@@ -3,13 +3,23 @@ package com.amolg.flutterbarcodescanner;
 import android.content.Context;
 
 import com.amolg.flutterbarcodescanner.camera.GraphicOverlay;
+import com.amolg.flutterbarcodescanner.camera.ScanMetrics;
 import com.google.android.gms.vision.MultiProcessor;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.barcode.Barcode;
 
+import java.util.ArrayDeque;
+
+/**
+ * Hands out trackers for newly seen codes from a bounded pool that finished trackers return
+ * to, so steady continuous scanning does not allocate a tracker and graphic per code.
+ */
 class BarcodeTrackerFactory implements MultiProcessor.Factory<Barcode> {
+    static final int MAX_POOL_SIZE = 16;
+
     private final GraphicOverlay<BarcodeGraphic> mGraphicOverlay;
     private final Context mContext;
+    private final ArrayDeque<BarcodeGraphicTracker> mPool = new ArrayDeque<>(MAX_POOL_SIZE);
 
     public BarcodeTrackerFactory(GraphicOverlay<BarcodeGraphic> mGraphicOverlay, Context mContext) {
         this.mGraphicOverlay = mGraphicOverlay;
@@ -18,7 +28,21 @@ class BarcodeTrackerFactory implements MultiProcessor.Factory<Barcode> {
 
     @Override
     public Tracker<Barcode> create(Barcode barcode) {
+        BarcodeGraphicTracker tracker;
+        synchronized (mPool) {
+            tracker = mPool.poll();
+        }
+        ScanMetrics.getDefault().onTrackerAcquired(tracker != null);
+        if (tracker != null) return tracker;
+
         BarcodeGraphic graphic = new BarcodeGraphic(mGraphicOverlay);
-        return new BarcodeGraphicTracker(mGraphicOverlay, graphic, mContext);
+        return new BarcodeGraphicTracker(mGraphicOverlay, graphic, mContext, this);
+    }
+
+    /** Takes back a tracker whose code is gone; beyond the pool size it is left to the GC. */
+    void recycle(BarcodeGraphicTracker tracker) {
+        synchronized (mPool) {
+            if (mPool.size() < MAX_POOL_SIZE) mPool.push(tracker);
+        }
     }
 }
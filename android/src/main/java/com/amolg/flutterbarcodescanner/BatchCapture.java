@@ -0,0 +1,63 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the distinct (format, value) pairs seen over consecutive detector frames for a
+ * batch scan, keeping each code's latest position. The batch is complete once the target
+ * count is reached or no new code has appeared for a number of frames; the timeout is
+ * enforced by the caller.
+ */
+class BatchCapture {
+    static final int DEFAULT_STABLE_FRAMES = 30;
+    static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    private final int mTargetCount;
+    private final int mStableFrames;
+    private final LinkedHashMap<String, Map<String, Object>> mResults = new LinkedHashMap<>();
+    private int mFramesSinceNewCode;
+    private boolean mComplete;
+
+    /** {@code targetCount} or {@code stableFrames} of zero or less disables that condition. */
+    BatchCapture(int targetCount, int stableFrames) {
+        mTargetCount = targetCount;
+        mStableFrames = stableFrames;
+    }
+
+    /**
+     * Adds one frame's detections, found at the given scan-region offset; returns true the first
+     * time the batch becomes complete.
+     */
+    synchronized boolean onFrame(SparseArray<Barcode> items, int frameId, long timestampMillis,
+                                 int offsetX, int offsetY) {
+        if (mComplete) return false;
+        boolean added = false;
+        for (int i = 0; i < items.size(); i++) {
+            Barcode barcode = items.valueAt(i);
+            if (barcode == null || barcode.rawValue == null) continue;
+            String key = barcode.format + ":" + barcode.rawValue;
+            Map<String, Object> result = ResultBatcher.toMessage(barcode, frameId, timestampMillis, offsetX, offsetY);
+            added |= mResults.put(key, result) == null;
+        }
+        mFramesSinceNewCode = added ? 0 : mFramesSinceNewCode + 1;
+
+        boolean targetReached = mTargetCount > 0 && mResults.size() >= mTargetCount;
+        boolean stable = mStableFrames > 0 && !mResults.isEmpty() && mFramesSinceNewCode >= mStableFrames;
+        mComplete = targetReached || stable;
+        return mComplete;
+    }
+
+    /** Ends the batch, e.g. on timeout, so later frames are ignored. */
+    synchronized void complete() { mComplete = true; }
+
+    /** Every code collected so far, in the order first seen. */
+    synchronized ArrayList<Map<String, Object>> getResults() {
+        return new ArrayList<>(mResults.values());
+    }
+}
@@ -0,0 +1,123 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.Manifest;
+import android.content.Context;
+import android.hardware.Camera;
+
+import androidx.annotation.RequiresPermission;
+
+import com.amolg.flutterbarcodescanner.camera.Camera2Source;
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.amolg.flutterbarcodescanner.camera.FrameStampProcessor;
+import com.amolg.flutterbarcodescanner.camera.FrameSource;
+import com.google.android.gms.common.images.Size;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.MultiProcessor;
+import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.view.TextureRegistry;
+
+/**
+ * Scanner rendered into a Flutter texture instead of BarcodeCaptureActivity. The plugin drives
+ * the detection pipeline directly and results go to the event channel.
+ */
+@SuppressWarnings("deprecation")
+final class EmbeddedScanner {
+    private final Context mContext;
+    private final TextureRegistry.SurfaceTextureEntry mTexture;
+    private final ScannerWarmPool mWarmPool = ScannerWarmPool.get();
+    private FrameSource mSource;
+    private boolean mReleased;
+    private FrameStampProcessor<Barcode> mResultStamps;
+    private BarcodeDetector mDetector;
+
+    EmbeddedScanner(Context context, TextureRegistry textureRegistry) {
+        mContext = context;
+        mTexture = textureRegistry.createSurfaceTexture();
+        mWarmPool.onSessionStarted();
+    }
+
+    /** Starts the camera and returns the texture id with the preview geometry. */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    Map<String, Object> start(int facing, boolean useCamera2) throws IOException {
+        BarcodeDetector detector = mWarmPool.acquireDetector(mContext, FlutterBarcodeScannerPlugin.barcodeFormats);
+        mDetector = detector;
+        mResultStamps = new FrameStampProcessor<>(
+                new MultiProcessor.Builder<Barcode>(barcode -> new ResultTracker()).build());
+
+        if (useCamera2 && Camera2Source.isSupported()) {
+            mSource = new Camera2Source.Builder(mContext, detector, mResultStamps)
+                    .setProcessingThreadCount(CameraSource.DEFAULT_PROCESSING_THREADS)
+                    .setDetectorShared(true)
+                    .setFirstFrameListener(mWarmPool::onFirstFrame)
+                    .setFacing(facing)
+                    .setRequestedPreviewSize(1600, 1024)
+                    .setRequestedFps(30.0f)
+                    .setAdaptiveFrameRate(true)
+                    .setContinuousFocus(true)
+                    .build();
+        } else {
+            mSource = new CameraSource.Builder(mContext, detector, mResultStamps)
+                    .setProcessingThreadCount(CameraSource.DEFAULT_PROCESSING_THREADS)
+                    .setDetectorShared(true)
+                    .setFirstFrameListener(mWarmPool::onFirstFrame)
+                    .setCameraProvider(mWarmPool.getCameraWarmer())
+                    .setPreviewBufferRing(mWarmPool.getPreviewBuffers())
+                    .setFacing(facing)
+                    .setRequestedPreviewSize(1600, 1024)
+                    .setRequestedFps(30.0f)
+                    .setAdaptiveFrameRate(true)
+                    .setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)
+                    .build();
+        }
+
+        try {
+            mSource.start(mTexture.surfaceTexture());
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+
+        Size size = mSource.getPreviewSize();
+        Map<String, Object> info = new HashMap<>();
+        info.put("textureId", mTexture.id());
+        info.put("previewWidth", size != null ? size.getWidth() : 0);
+        info.put("previewHeight", size != null ? size.getHeight() : 0);
+        info.put("quarterTurns", mSource.getRotation());
+        return info;
+    }
+
+    void release() {
+        if (mReleased) return;
+        mReleased = true;
+        if (mSource != null) {
+            mSource.release();
+            mSource = null;
+        }
+        if (mDetector != null) {
+            mWarmPool.releaseDetector(mDetector);
+            mDetector = null;
+        }
+        mTexture.release();
+        mWarmPool.onSessionEnded();
+    }
+
+    private class ResultTracker extends Tracker<Barcode> {
+        @Override
+        public void onNewItem(int id, Barcode item) {
+            FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(
+                    item, mResultStamps.getFrameId(), mResultStamps.getTimestampMillis());
+        }
+
+        @Override
+        public void onUpdate(Detector.Detections<Barcode> detections, Barcode item) {
+            FlutterBarcodeScannerPlugin.onBarcodeSeen(item);
+        }
+    }
+}
@@ -1,15 +1,28 @@
 package com.amolg.flutterbarcodescanner;
 
+import android.Manifest;
+import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.Application;
+import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
 
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.amolg.flutterbarcodescanner.camera.ScanMetrics;
 import com.google.android.gms.common.api.CommonStatusCodes;
 import com.google.android.gms.vision.barcode.Barcode;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
@@ -22,6 +35,7 @@ import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.PluginRegistry;
+import io.flutter.view.TextureRegistry;
 
 /**
  * FlutterBarcodeScannerPlugin (V2 embedding)
@@ -41,15 +55,88 @@ public class FlutterBarcodeScannerPlugin implements
     public static volatile boolean isShowFlashIcon = false;
     public static volatile boolean isContinuousScan = false;
     public static volatile String lineColor = "#DC143C";
+    public static volatile boolean isScanRegionOnly = false;
+    public static volatile boolean useCamera2 = false;
+    public static volatile boolean isTiledScan = false;
+    public static volatile int barcodeFormats = Barcode.ALL_FORMATS;
+    public static volatile boolean isStructuredResults = false;
+    /** Collect distinct codes over many frames and return them together instead of the first one. */
+    public static volatile boolean isBatchCapture = false;
+    public static volatile int captureTargetCount = 0;
+    public static volatile int captureStableFrames = BatchCapture.DEFAULT_STABLE_FRAMES;
+    public static volatile long captureTimeoutMillis = BatchCapture.DEFAULT_TIMEOUT_MILLIS;
+    /** Path the scanner appends raw preview frames to for later replay, or null. */
+    public static volatile String recordFramesTo = null;
 
     private static volatile EventChannel.EventSink sEventSink;
+    private static final ResultDeduplicator sDeduplicator = new ResultDeduplicator(256);
+    private static final ResultQueue sResultQueue = new ResultQueue();
+    private static final ResultBatcher sBatcher = new ResultBatcher(sResultQueue);
 
     /** Called by BarcodeCaptureActivity to emit results when in continuous mode (or cancel). */
     public static void onBarcodeScanReceiver(Barcode barcode) {
-        EventChannel.EventSink sink = sEventSink;
-        if (sink != null) {
-            String value = (barcode != null && barcode.rawValue != null) ? barcode.rawValue : "-1";
-            sink.success(value);
+        onBarcodeScanReceiver(barcode, -1, 0);
+    }
+
+    /** Emits a result found in the given uncropped frame. */
+    public static void onBarcodeScanReceiver(Barcode barcode, int frameId, long timestampMillis) {
+        onBarcodeScanReceiver(barcode, frameId, timestampMillis, 0, 0);
+    }
+
+    /**
+     * Emits a result found in the given frame, batched when structured results were requested;
+     * {@code offsetX}, {@code offsetY} is the scan-region crop offset the detector saw it at.
+     */
+    public static void onBarcodeScanReceiver(Barcode barcode, int frameId, long timestampMillis,
+                                             int offsetX, int offsetY) {
+        if (barcode != null && barcode.rawValue != null
+                && !sDeduplicator.shouldDeliver(barcode.format, barcode.rawValue, SystemClock.elapsedRealtime())) {
+            return;
+        }
+        if (barcode != null && isStructuredResults) {
+            sBatcher.add(barcode, frameId, timestampMillis, offsetX, offsetY);
+            return;
+        }
+        if (barcode == null || barcode.rawValue == null) {
+            sResultQueue.offerControl("-1");
+            return;
+        }
+        sResultQueue.offer(barcode.rawValue, barcode.rawValue);
+    }
+
+    /** Codes the user dragged a rectangle around, sent as one selection event that is never dropped. */
+    public static void onBarcodesSelected(List<Barcode> barcodes, int frameId, long timestampMillis,
+                                          int offsetX, int offsetY) {
+        List<Map<String, Object>> results = new ArrayList<>(barcodes.size());
+        for (Barcode barcode : barcodes) {
+            results.add(ResultBatcher.toMessage(barcode, frameId, timestampMillis, offsetX, offsetY));
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put(ResultBatcher.KEY_TYPE, ResultBatcher.TYPE_SELECTION);
+        event.put("results", results);
+        sResultQueue.offerControl(event);
+    }
+
+    /** The user cancelled a continuous scan: "-1" for string streams, end-of-stream otherwise. */
+    public static void onScanCancelled() {
+        if (isStructuredResults) {
+            sBatcher.end();
+            return;
+        }
+        sResultQueue.offerControl("-1");
+    }
+
+    /** A continuous or embedded session is over; ends a structured stream if one is open. */
+    public static void onScanSessionEnded() {
+        if (isStructuredResults) sBatcher.end();
+    }
+
+    static EventChannel.EventSink getEventSink() { return sEventSink; }
+
+    /** Called while a reported barcode stays tracked, extending its suppression window. */
+    public static void onBarcodeSeen(Barcode barcode) {
+        if (barcode != null && barcode.rawValue != null) {
+            sDeduplicator.onSeen(barcode.format, barcode.rawValue, SystemClock.elapsedRealtime());
         }
     }
     // ===================================================
@@ -62,11 +149,14 @@ public class FlutterBarcodeScannerPlugin implements
     private EventChannel eventChannel;
     private Application applicationContext;
     private ActivityPluginBinding activityBinding;
+    private TextureRegistry textureRegistry;
+    private EmbeddedScanner embeddedScanner;
 
     // FlutterPlugin
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
         applicationContext = (Application) binding.getApplicationContext();
+        textureRegistry = binding.getTextureRegistry();
         BinaryMessenger messenger = binding.getBinaryMessenger();
 
         methodChannel = new MethodChannel(messenger, CHANNEL);
@@ -86,6 +176,8 @@ public class FlutterBarcodeScannerPlugin implements
             eventChannel.setStreamHandler(null);
             eventChannel = null;
         }
+        stopEmbeddedScanner();
+        textureRegistry = null;
         applicationContext = null;
     }
 
@@ -119,12 +211,65 @@ public class FlutterBarcodeScannerPlugin implements
     // MethodCallHandler
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        if ("prepare".equals(call.method)) {
+            prepare(call, result);
+            return;
+        }
+        if ("startScanner".equals(call.method)) {
+            startEmbeddedScanner(call, result);
+            return;
+        }
+        if ("stopScanner".equals(call.method)) {
+            stopEmbeddedScanner();
+            result.success(null);
+            return;
+        }
+        if ("getDedupStats".equals(call.method)) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("delivered", sDeduplicator.getDeliveredCount());
+            stats.put("suppressed", sDeduplicator.getSuppressedCount());
+            stats.put("cached", sDeduplicator.size());
+            result.success(stats);
+            return;
+        }
+        if ("scanImages".equals(call.method)) {
+            scanImages(call, result);
+            return;
+        }
+        if ("cancelImageScan".equals(call.method)) {
+            Integer jobId = call.arguments instanceof Map ? safeInt(((Map<?, ?>) call.arguments).get("jobId")) : null;
+            result.success(jobId != null && ImageScanner.cancel(jobId));
+            return;
+        }
+        if ("getDeliveryStats".equals(call.method)) {
+            result.success(sResultQueue.getStats());
+            return;
+        }
+        if ("getScanMetrics".equals(call.method)) {
+            ScanMetrics metrics = ScanMetrics.getDefault();
+            Map<String, Object> snapshot = metrics.snapshot();
+            snapshot.put("deviceModel", Build.MANUFACTURER + " " + Build.MODEL);
+            snapshot.put("sdkInt", Build.VERSION.SDK_INT);
+            Boolean reset = call.arguments instanceof Map ? safeBool(((Map<?, ?>) call.arguments).get("reset")) : null;
+            if (reset != null && reset) metrics.reset();
+            result.success(snapshot);
+            return;
+        }
+        if ("getTimeToFirstFrame".equals(call.method)) {
+            result.success(ScannerWarmPool.get().getTimeToFirstFrameMillis());
+            return;
+        }
+
         pendingResult = result;
 
         if ("scanBarcode".equals(call.method)) {
+            ScannerWarmPool.get().onScanRequested();
             try {
                 // Read args
-                // expected map keys: lineColor, isShowFlashIcon, isContinuousScan, cancelButtonText
+                // expected map keys: lineColor, isShowFlashIcon, isContinuousScan, cancelButtonText, isScanRegionOnly, useCamera2, isTiledScan,
+                // scanMode, barcodeFormats, dedupWindowMillis, dedupCooldownMillis,
+                // structuredResults, batchWindowMillis, batchMaxCount, queueCapacity, overflowPolicy, recordFramesTo,
+                // isBatchCapture, captureTargetCount, captureStableFrames, captureTimeoutMillis
                 arguments = (Map<String, Object>) call.arguments;
 
                 String lineColorArg = (String) arguments.get("lineColor");
@@ -132,15 +277,36 @@ public class FlutterBarcodeScannerPlugin implements
 
                 Boolean showFlash = safeBool(arguments.get("isShowFlashIcon"));
                 Boolean continuous = safeBool(arguments.get("isContinuousScan"));
+                Boolean scanRegionOnly = safeBool(arguments.get("isScanRegionOnly"));
+                Boolean camera2 = safeBool(arguments.get("useCamera2"));
+                Boolean tiledScan = safeBool(arguments.get("isTiledScan"));
+                Object recordPath = arguments.get("recordFramesTo");
+                Boolean batchCapture = safeBool(arguments.get("isBatchCapture"));
+                Integer targetCount = safeInt(arguments.get("captureTargetCount"));
+                Integer stableFrames = safeInt(arguments.get("captureStableFrames"));
+                Integer timeoutMillis = safeInt(arguments.get("captureTimeoutMillis"));
 
                 // Update static state for Activity/Overlay
                 lineColor = (lineColorArg == null || lineColorArg.isEmpty()) ? "#DC143C" : lineColorArg;
                 isShowFlashIcon = showFlash != null && showFlash;
                 isContinuousScan = continuous != null && continuous;
+                isBatchCapture = !isContinuousScan && batchCapture != null && batchCapture;
+                captureTargetCount = targetCount != null ? targetCount : 0;
+                captureStableFrames = stableFrames != null ? stableFrames : BatchCapture.DEFAULT_STABLE_FRAMES;
+                captureTimeoutMillis = timeoutMillis != null && timeoutMillis > 0
+                        ? timeoutMillis : BatchCapture.DEFAULT_TIMEOUT_MILLIS;
+                isScanRegionOnly = scanRegionOnly != null && scanRegionOnly;
+                useCamera2 = camera2 != null && camera2;
+                isTiledScan = tiledScan != null && tiledScan;
+                recordFramesTo = recordPath instanceof String && !((String) recordPath).isEmpty() ? (String) recordPath : null;
+                BarcodeCaptureActivity.SCAN_MODE = resolveScanMode(arguments);
+                barcodeFormats = resolveFormats(arguments);
+                configureDeduplicator(arguments);
+                configureResultStream(arguments);
 
                 if (activity == null) {
                     Log.e("FlutterBarcodeScanner", "Activity is null");
-                    result.success("-1");
+                    result.success(cancelledResult());
                     return;
                 }
 
@@ -157,20 +323,154 @@ public class FlutterBarcodeScannerPlugin implements
                 }
             } catch (Exception e) {
                 Log.e("FlutterBarcodeScanner", "onMethodCall error: " + e.getMessage(), e);
-                safeFinishWith("-1");
+                safeFinishWith(cancelledResult());
             }
         } else {
             result.notImplemented();
         }
     }
 
+    /** Warms the detector, preview buffers and optionally the camera ahead of a scan. */
+    private void prepare(MethodCall call, Result result) {
+        Context context = activity != null ? activity : applicationContext;
+        if (context == null) {
+            result.success(false);
+            return;
+        }
+        Map<?, ?> args = call.arguments instanceof Map ? (Map<?, ?>) call.arguments : null;
+        Boolean openCamera = args != null ? safeBool(args.get("openCamera")) : null;
+        Integer idleTimeout = args != null ? safeInt(args.get("idleTimeoutMillis")) : null;
+
+        ScannerWarmPool.get().prepare(context, resolveFormats(args), openCamera != null && openCamera,
+                idleTimeout != null ? idleTimeout : 0);
+        result.success(true);
+    }
+
+    /** Starts a texture-backed scanner; results are delivered through the event channel. */
+    @SuppressLint("MissingPermission")
+    private void startEmbeddedScanner(MethodCall call, Result result) {
+        Context context = activity != null ? activity : applicationContext;
+        if (context == null || textureRegistry == null) {
+            result.error("NO_CONTEXT", "Plugin is not attached", null);
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            result.error("PERMISSION_DENIED", "Camera permission not granted", null);
+            return;
+        }
+
+        Map<?, ?> args = call.arguments instanceof Map ? (Map<?, ?>) call.arguments : null;
+        Boolean frontCamera = args != null ? safeBool(args.get("useFrontCamera")) : null;
+        Boolean camera2 = args != null ? safeBool(args.get("useCamera2")) : null;
+
+        BarcodeCaptureActivity.SCAN_MODE = resolveScanMode(args);
+        barcodeFormats = resolveFormats(args);
+        if (args != null) {
+            configureDeduplicator(args);
+            configureResultStream(args);
+        }
+
+        stopEmbeddedScanner();
+        ScannerWarmPool.get().onScanRequested();
+        embeddedScanner = new EmbeddedScanner(context, textureRegistry);
+        try {
+            result.success(embeddedScanner.start(
+                    frontCamera != null && frontCamera ? CameraSource.CAMERA_FACING_FRONT : CameraSource.CAMERA_FACING_BACK,
+                    camera2 != null && camera2));
+        } catch (IOException | RuntimeException e) {
+            Log.e("FlutterBarcodeScanner", "startScanner error: " + e.getMessage(), e);
+            embeddedScanner = null;
+            result.error("CAMERA_ERROR", e.getMessage(), null);
+        }
+    }
+
+    /** Starts decoding image files; per-file results and the end event arrive on the event channel. */
+    private void scanImages(MethodCall call, Result result) {
+        Context context = activity != null ? activity : applicationContext;
+        Map<?, ?> args = call.arguments instanceof Map ? (Map<?, ?>) call.arguments : null;
+        Object paths = args != null ? args.get("paths") : null;
+        if (context == null || !(paths instanceof List)) {
+            result.error("BAD_ARGS", "Expected a list of paths", null);
+            return;
+        }
+
+        List<String> files = new ArrayList<>();
+        for (Object path : (List<?>) paths) {
+            if (path instanceof String) files.add((String) path);
+        }
+        Integer maxPixels = safeInt(args.get("maxPixels"));
+        Integer parallelism = safeInt(args.get("parallelism"));
+
+        ImageScanner scanner = new ImageScanner(context, sResultQueue, resolveFormats(args),
+                maxPixels != null ? maxPixels : 0, parallelism != null ? parallelism : 0);
+        result.success(scanner.start(files));
+    }
+
+    private void stopEmbeddedScanner() {
+        if (embeddedScanner != null) {
+            embeddedScanner.release();
+            embeddedScanner = null;
+            onScanSessionEnded();
+        }
+    }
+
+    /** Applies the session's suppression window and cooldown and forgets earlier values. */
+    private static void configureDeduplicator(Map<?, ?> args) {
+        Integer window = safeInt(args.get("dedupWindowMillis"));
+        Integer cooldown = safeInt(args.get("dedupCooldownMillis"));
+        sDeduplicator.configure(
+                window != null ? window : ResultDeduplicator.DEFAULT_WINDOW_MILLIS,
+                cooldown != null ? cooldown : ResultDeduplicator.DEFAULT_COOLDOWN_MILLIS);
+        sDeduplicator.clear();
+    }
+
+    /** Selects string events or batched structured results, and the delivery queue's flow control. */
+    private static void configureResultStream(Map<?, ?> args) {
+        Boolean structured = safeBool(args.get("structuredResults"));
+        Integer window = safeInt(args.get("batchWindowMillis"));
+        Integer maxCount = safeInt(args.get("batchMaxCount"));
+        Integer queueCapacity = safeInt(args.get("queueCapacity"));
+        isStructuredResults = structured != null && structured;
+        sBatcher.configure(
+                window != null ? window : ResultBatcher.DEFAULT_WINDOW_MILLIS,
+                maxCount != null ? maxCount : ResultBatcher.DEFAULT_MAX_COUNT);
+        sResultQueue.configure(queueCapacity != null ? queueCapacity : ResultQueue.DEFAULT_CAPACITY,
+                ResultQueue.parsePolicy(args.get("overflowPolicy")));
+    }
+
+    /** The "scanMode" argument, or DEFAULT when it is missing or out of range. */
+    private static int resolveScanMode(Map<?, ?> args) {
+        Integer scanMode = args != null ? safeInt(args.get("scanMode")) : null;
+        return scanMode != null && scanMode >= 0 && scanMode < BarcodeCaptureActivity.SCAN_MODE_ENUM.values().length
+                ? scanMode : BarcodeCaptureActivity.SCAN_MODE_ENUM.DEFAULT.ordinal();
+    }
+
+    /** Detector formats for the "barcodeFormats" argument, falling back to the scan mode's. */
+    private static int resolveFormats(Map<?, ?> args) {
+        Object formatNames = args != null ? args.get("barcodeFormats") : null;
+        return BarcodeFormats.resolve(resolveScanMode(args), formatNames instanceof List ? (List<?>) formatNames : null);
+    }
+
     private static Boolean safeBool(Object o) {
         if (o instanceof Boolean) return (Boolean) o;
         if (o instanceof String) return Boolean.parseBoolean((String) o);
         return null;
     }
 
-    private void safeFinishWith(String value) {
+    private static Integer safeInt(Object o) {
+        if (o instanceof Number) return ((Number) o).intValue();
+        if (o instanceof String) {
+            try { return Integer.parseInt((String) o); } catch (NumberFormatException ignored) {}
+        }
+        return null;
+    }
+
+    /** What a cancelled or failed scan returns: "-1", or no codes for a batch capture. */
+    private static Object cancelledResult() {
+        return isBatchCapture ? new ArrayList<>() : "-1";
+    }
+
+    private void safeFinishWith(Object value) {
         if (pendingResult != null) {
             pendingResult.success(value);
             pendingResult = null;
@@ -183,7 +483,10 @@ public class FlutterBarcodeScannerPlugin implements
     public boolean onActivityResult(int requestCode, int resultCode, Intent data) {
         if (requestCode != RC_BARCODE_CAPTURE) return false;
 
-        if (resultCode == CommonStatusCodes.SUCCESS && data != null) {
+        if (resultCode == CommonStatusCodes.SUCCESS && data != null && isBatchCapture) {
+            Object results = data.getSerializableExtra(BarcodeCaptureActivity.BatchResults);
+            safeFinishWith(results instanceof List ? results : cancelledResult());
+        } else if (resultCode == CommonStatusCodes.SUCCESS && data != null) {
             try {
                 Barcode barcode = data.getParcelableExtra(BarcodeCaptureActivity.BarcodeObject);
                 if (barcode != null) {
@@ -195,7 +498,7 @@ public class FlutterBarcodeScannerPlugin implements
                 safeFinishWith("-1");
             }
         } else {
-            safeFinishWith("-1");
+            safeFinishWith(cancelledResult());
         }
         return true;
     }
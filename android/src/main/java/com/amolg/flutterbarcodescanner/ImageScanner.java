@@ -0,0 +1,219 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.amolg.flutterbarcodescanner.camera.LumaPyramid;
+import com.amolg.flutterbarcodescanner.camera.ScanRegion;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes barcodes from image files (JPEG/PNG/WebP/BMP, or raw NV21 dumps named
+ * {@code *_<width>x<height>.nv21}) on a bounded worker pool. Large images are downsampled to a
+ * pixel budget while decoding and every file's result is streamed to the event channel as it
+ * completes, followed by an end event for the job.
+ */
+final class ImageScanner {
+    private static final String TAG = "ImageScanner";
+
+    static final int DEFAULT_MAX_PIXELS = 4_000_000;
+    static final int DEFAULT_PARALLELISM = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+
+    static final String TYPE_IMAGE = "image";
+    static final String TYPE_END = "imageScanEnd";
+
+    private static final Pattern NV21_SIZE = Pattern.compile("(\\d+)x(\\d+)\\.nv21$");
+    private static final List<String> IMAGE_EXTENSIONS =
+            Arrays.asList(".jpg", ".jpeg", ".png", ".webp", ".bmp", ".nv21");
+
+    private static final AtomicInteger sNextJobId = new AtomicInteger(1);
+    private static final Map<Integer, ImageScanner> sJobs = new ConcurrentHashMap<>();
+
+    private final int mJobId = sNextJobId.getAndIncrement();
+    private final Context mContext;
+    private final ResultQueue mQueue;
+    private final int mFormats;
+    private final int mMaxPixels;
+    private final int mParallelism;
+    private volatile boolean mCancelled;
+
+    ImageScanner(Context context, ResultQueue queue, int formats, int maxPixels, int parallelism) {
+        mContext = context.getApplicationContext();
+        mQueue = queue;
+        mFormats = formats;
+        mMaxPixels = maxPixels > 0 ? maxPixels : DEFAULT_MAX_PIXELS;
+        mParallelism = parallelism > 0 ? parallelism : DEFAULT_PARALLELISM;
+    }
+
+    /** Starts decoding the given files and directories in the background and returns the job id. */
+    int start(List<String> paths) {
+        sJobs.put(mJobId, this);
+        new Thread(() -> run(paths), TAG + "-" + mJobId).start();
+        return mJobId;
+    }
+
+    static boolean cancel(int jobId) {
+        ImageScanner job = sJobs.get(jobId);
+        if (job == null) return false;
+        job.mCancelled = true;
+        return true;
+    }
+
+    private void run(List<String> paths) {
+        List<File> files = listFiles(paths);
+        BarcodeDetector detector = new BarcodeDetector.Builder(mContext).setBarcodeFormats(mFormats).build();
+        // Caller-runs keeps at most a few files queued ahead of the workers.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(mParallelism, mParallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(mParallelism * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (int i = 0; i < files.size() && !mCancelled; i++) {
+                final int index = i;
+                final File file = files.get(i);
+                executor.execute(() -> {
+                    if (mCancelled) return;
+                    try {
+                        // Blocks while the main looper is behind, which in turn stalls the
+                        // caller-runs submission loop instead of piling up decoded results.
+                        mQueue.offerAwaiting(decodeFile(detector, index, file));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            detector.release();
+            sJobs.remove(mJobId);
+
+            Map<String, Object> end = new HashMap<>();
+            end.put(ResultBatcher.KEY_TYPE, TYPE_END);
+            end.put("jobId", mJobId);
+            end.put("files", files.size());
+            end.put("cancelled", mCancelled);
+            mQueue.offerControl(end);
+        }
+    }
+
+    private static List<File> listFiles(List<String> paths) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] children = file.isDirectory() ? file.listFiles() : null;
+            if (children == null) {
+                files.add(file);
+                continue;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isFile() && isImage(child)) files.add(child);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isImage(File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    private Map<String, Object> decodeFile(BarcodeDetector detector, int index, File file) {
+        Map<String, Object> event = new HashMap<>();
+        event.put(ResultBatcher.KEY_TYPE, TYPE_IMAGE);
+        event.put("jobId", mJobId);
+        event.put("index", index);
+        event.put("path", file.getPath());
+
+        Bitmap bitmap = null;
+        try {
+            Frame frame;
+            Matcher nv21 = NV21_SIZE.matcher(file.getName().toLowerCase(Locale.US));
+            if (nv21.find()) {
+                frame = readNv21(file, Integer.parseInt(nv21.group(1)), Integer.parseInt(nv21.group(2)));
+            } else {
+                bitmap = readBitmap(file);
+                frame = new Frame.Builder().setBitmap(bitmap).setId(index).build();
+            }
+
+            SparseArray<Barcode> items = detector.detect(frame);
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (int i = 0; items != null && i < items.size(); i++) {
+                results.add(ResultBatcher.toMessage(items.valueAt(i), index, 0));
+            }
+            event.put("results", results);
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            Log.w(TAG, "Could not decode " + file, e);
+            event.put("error", String.valueOf(e.getMessage()));
+        } finally {
+            if (bitmap != null) bitmap.recycle();
+        }
+        return event;
+    }
+
+    /** Decodes with the smallest power-of-two subsampling that fits the pixel budget. */
+    private Bitmap readBitmap(File file) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) throw new IOException("Not an image: " + file);
+
+        int sampleSize = 1;
+        while ((long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize) > mMaxPixels) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null) throw new IOException("Could not decode image: " + file);
+        return bitmap;
+    }
+
+    private Frame readNv21(File file, int width, int height) throws IOException {
+        int size = ScanRegion.getNv21Size(width, height);
+        if (file.length() < size) throw new IOException("Truncated NV21 frame: " + file);
+
+        ByteBuffer data = ByteBuffer.allocate(size);
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.readFully(data.array(), 0, size);
+        }
+        while ((long) width * height > mMaxPixels && LumaPyramid.canDownsample(width, height)) {
+            LumaPyramid level = new LumaPyramid();
+            data = level.downsample(data, width, height);
+            width = level.getWidth();
+            height = level.getHeight();
+        }
+        return new Frame.Builder()
+                .setImageData(data, width, height, ImageFormat.NV21)
+                .build();
+    }
+}
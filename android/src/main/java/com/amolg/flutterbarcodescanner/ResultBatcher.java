@@ -0,0 +1,134 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.graphics.Point;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects scan results and queues them for the event channel as one StandardMessageCodec
+ * map per batch, flushed after a time window or once a count is reached, followed by an
+ * explicit end-of-stream event.
+ */
+class ResultBatcher {
+    static final long DEFAULT_WINDOW_MILLIS = 100;
+    static final int DEFAULT_MAX_COUNT = 32;
+
+    static final String KEY_TYPE = "type";
+    static final String TYPE_BATCH = "batch";
+    static final String TYPE_END = "end";
+    static final String TYPE_SELECTION = "selection";
+
+    private final ResultQueue mQueue;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFlush = this::flush;
+
+    private List<Map<String, Object>> mPending = new ArrayList<>();
+    private long mWindowMillis = DEFAULT_WINDOW_MILLIS;
+    private int mMaxCount = DEFAULT_MAX_COUNT;
+    private boolean mEnded;
+
+    ResultBatcher(ResultQueue queue) {
+        mQueue = queue;
+    }
+
+    /** Starts a new stream with the given flush window and batch size. */
+    synchronized void configure(long windowMillis, int maxCount) {
+        mWindowMillis = Math.max(0, windowMillis);
+        mMaxCount = Math.max(1, maxCount);
+        mPending = new ArrayList<>();
+        mEnded = false;
+    }
+
+    /** May be called from any thread; the offset is as for {@link #toMessage}. */
+    void add(Barcode barcode, int frameId, long timestampMillis, int offsetX, int offsetY) {
+        Map<String, Object> result = toMessage(barcode, frameId, timestampMillis, offsetX, offsetY);
+        synchronized (this) {
+            if (mEnded) return;
+            mPending.add(result);
+            if (mPending.size() >= mMaxCount) {
+                mMainHandler.removeCallbacks(mFlush);
+                mMainHandler.post(mFlush);
+            } else if (mPending.size() == 1) {
+                mMainHandler.postDelayed(mFlush, mWindowMillis);
+            }
+        }
+    }
+
+    /** Flushes what is pending and sends the end-of-stream event once. */
+    void end() {
+        synchronized (this) {
+            if (mEnded) return;
+            mEnded = true;
+        }
+        mMainHandler.post(() -> {
+            flush();
+            Map<String, Object> event = new HashMap<>();
+            event.put(KEY_TYPE, TYPE_END);
+            mQueue.offerControl(event);
+        });
+    }
+
+    private void flush() {
+        List<Map<String, Object>> results;
+        synchronized (this) {
+            mMainHandler.removeCallbacks(mFlush);
+            if (mPending.isEmpty()) return;
+            results = mPending;
+            mPending = new ArrayList<>();
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put(KEY_TYPE, TYPE_BATCH);
+        event.put("results", results);
+        mQueue.offer(event, null);
+    }
+
+    static Map<String, Object> toMessage(Barcode barcode, int frameId, long timestampMillis) {
+        return toMessage(barcode, frameId, timestampMillis, 0, 0);
+    }
+
+    /**
+     * {@code offsetX}, {@code offsetY} is where the detector's frame sits inside the full upright
+     * frame, see {@link com.amolg.flutterbarcodescanner.camera.ScanRegion#getOffsetX()}, so the
+     * bbox and corners of a code found in a scan-region crop are reported in full-frame coordinates.
+     */
+    static Map<String, Object> toMessage(Barcode barcode, int frameId, long timestampMillis,
+                                         int offsetX, int offsetY) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("format", barcode.format);
+        byte[] value = barcode.rawBytes;
+        if (value == null) {
+            value = barcode.rawValue != null ? barcode.rawValue.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+        result.put("value", value);
+
+        Point[] corners = barcode.cornerPoints;
+        if (corners != null && corners.length > 0) {
+            int[] cornerCoordinates = new int[corners.length * 2];
+            int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE;
+            int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+            for (int i = 0; i < corners.length; i++) {
+                int x = corners[i].x + offsetX;
+                int y = corners[i].y + offsetY;
+                cornerCoordinates[2 * i] = x;
+                cornerCoordinates[2 * i + 1] = y;
+                left = Math.min(left, x);
+                top = Math.min(top, y);
+                right = Math.max(right, x);
+                bottom = Math.max(bottom, y);
+            }
+            result.put("bbox", new int[] {left, top, right, bottom});
+            result.put("corners", cornerCoordinates);
+        }
+        result.put("frameId", frameId);
+        result.put("timestampMillis", timestampMillis);
+        return result;
+    }
+}
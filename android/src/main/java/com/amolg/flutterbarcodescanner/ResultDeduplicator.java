@@ -0,0 +1,78 @@
+package com.amolg.flutterbarcodescanner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of recently reported (format, value) pairs that drops repeats before they cross
+ * the platform channel. A value is suppressed while it keeps being seen within the suppression
+ * window, and is never reported twice within the cooldown.
+ */
+public class ResultDeduplicator {
+    public static final long DEFAULT_WINDOW_MILLIS = 2000;
+    public static final long DEFAULT_COOLDOWN_MILLIS = 0;
+
+    private static final class Sighting {
+        long mLastSeenMillis;
+        long mLastDeliveredMillis;
+    }
+
+    private final LinkedHashMap<String, Sighting> mEntries;
+    private long mWindowMillis = DEFAULT_WINDOW_MILLIS;
+    private long mCooldownMillis = DEFAULT_COOLDOWN_MILLIS;
+    private long mDeliveredCount;
+    private long mSuppressedCount;
+
+    public ResultDeduplicator(final int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        mEntries = new LinkedHashMap<String, Sighting>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Sighting> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized void configure(long windowMillis, long cooldownMillis) {
+        mWindowMillis = Math.max(0, windowMillis);
+        mCooldownMillis = Math.max(0, cooldownMillis);
+    }
+
+    /** Returns true if the value should be reported, recording the sighting either way. */
+    public synchronized boolean shouldDeliver(int format, String value, long nowMillis) {
+        String key = format + ":" + value;
+        Sighting sighting = mEntries.get(key);
+        if (sighting == null) {
+            sighting = new Sighting();
+            sighting.mLastDeliveredMillis = nowMillis;
+            sighting.mLastSeenMillis = nowMillis;
+            mEntries.put(key, sighting);
+            mDeliveredCount++;
+            return true;
+        }
+
+        boolean deliver = nowMillis - sighting.mLastSeenMillis > mWindowMillis
+                && nowMillis - sighting.mLastDeliveredMillis >= mCooldownMillis;
+        sighting.mLastSeenMillis = nowMillis;
+        if (deliver) {
+            sighting.mLastDeliveredMillis = nowMillis;
+            mDeliveredCount++;
+        } else {
+            mSuppressedCount++;
+        }
+        return deliver;
+    }
+
+    /** Refreshes the last-seen time of an already reported value that is still in view. */
+    public synchronized void onSeen(int format, String value, long nowMillis) {
+        Sighting sighting = mEntries.get(format + ":" + value);
+        if (sighting != null) sighting.mLastSeenMillis = nowMillis;
+    }
+
+    /** Forgets all values, e.g. when a new scan session starts; counters are kept. */
+    public synchronized void clear() { mEntries.clear(); }
+
+    public synchronized long getDeliveredCount() { return mDeliveredCount; }
+    public synchronized long getSuppressedCount() { return mSuppressedCount; }
+    public synchronized int size() { return mEntries.size(); }
+}
@@ -0,0 +1,215 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.amolg.flutterbarcodescanner.camera.ScanMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Bounded queue between detector callbacks (any thread) and the event channel, drained on the
+ * main looper a limited number of events per pass. Producers never block: when the queue is
+ * full the overflow policy decides what is dropped. Control events such as end-of-stream are
+ * never dropped and do not count against the capacity. Producers that must not lose events,
+ * like the image scanner, use {@link #offerAwaiting} and block instead.
+ */
+class ResultQueue {
+    enum OverflowPolicy { DROP_OLDEST, DROP_NEWEST, COALESCE }
+
+    static final int DEFAULT_CAPACITY = 64;
+    private static final int MAX_EVENTS_PER_DRAIN = 16;
+
+    private static final class Item {
+        final Object mEvent;
+        final String mKey;
+        final boolean mControl;
+        /** Released once the event left the queue, for events offered with offerAwaiting(). */
+        final Semaphore mPermits;
+        final long mEnqueuedNanos = System.nanoTime();
+
+        Item(Object event, String key, boolean control) {
+            this(event, key, control, null);
+        }
+
+        Item(Object event, String key, boolean control, Semaphore permits) {
+            mEvent = event;
+            mKey = key;
+            mControl = control;
+            mPermits = permits;
+        }
+
+        void release() {
+            if (mPermits != null) mPermits.release();
+        }
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mDrain = this::drain;
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+
+    private final ConcurrentLinkedQueue<Item> mQueue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Object> mLatestByKey = new ConcurrentHashMap<>();
+    private final AtomicInteger mDepth = new AtomicInteger();
+
+    private volatile int mCapacity = DEFAULT_CAPACITY;
+    private volatile OverflowPolicy mPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile Semaphore mAwaitingPermits = new Semaphore(DEFAULT_CAPACITY);
+
+    private volatile int mMaxDepth;
+    private final AtomicLong mEnqueuedCount = new AtomicLong();
+    private final AtomicLong mDeliveredCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    /** Starts a new session: events still queued from an earlier one are discarded. */
+    void configure(int capacity, OverflowPolicy policy) {
+        mCapacity = Math.max(1, capacity);
+        mPolicy = policy;
+        mAwaitingPermits = new Semaphore(mCapacity);
+        Item item;
+        while ((item = mQueue.poll()) != null) item.release();
+        mLatestByKey.clear();
+        mDepth.set(0);
+        mMaxDepth = 0;
+    }
+
+    static OverflowPolicy parsePolicy(Object name) {
+        if ("dropNewest".equals(name)) return OverflowPolicy.DROP_NEWEST;
+        if ("coalesce".equals(name)) return OverflowPolicy.COALESCE;
+        return OverflowPolicy.DROP_OLDEST;
+    }
+
+    /** Queues a result event; {@code key} identifies events that COALESCE may merge. */
+    void offer(Object event, String key) {
+        mEnqueuedCount.incrementAndGet();
+        OverflowPolicy policy = mPolicy;
+        if (policy == OverflowPolicy.COALESCE && key != null) {
+            offerCoalesced(event, key);
+            return;
+        }
+
+        int depth = mDepth.incrementAndGet();
+        if (depth > mCapacity) {
+            if (policy == OverflowPolicy.DROP_OLDEST && dropOldest()) {
+                depth = mDepth.get();
+            } else {
+                mDepth.decrementAndGet();
+                mDroppedCount.incrementAndGet();
+                return;
+            }
+        }
+        enqueue(new Item(event, null, false), depth);
+    }
+
+    /**
+     * Merges the event into the one queued under its key, or reserves a slot before publishing
+     * the key: once another producer can coalesce into a key, it is always delivered.
+     */
+    private void offerCoalesced(Object event, String key) {
+        while (true) {
+            if (mLatestByKey.replace(key, event) != null) {
+                mCoalescedCount.incrementAndGet();
+                return;
+            }
+            int depth = mDepth.incrementAndGet();
+            if (depth > mCapacity) {
+                mDepth.decrementAndGet();
+                mDroppedCount.incrementAndGet();
+                return;
+            }
+            if (mLatestByKey.putIfAbsent(key, event) == null) {
+                enqueue(new Item(null, key, false), depth);
+                return;
+            }
+            // Another producer published the key in between; merge into it instead.
+            mDepth.decrementAndGet();
+        }
+    }
+
+    private void enqueue(Item item, int depth) {
+        if (depth > mMaxDepth) mMaxDepth = depth;
+        mQueue.offer(item);
+        scheduleDrain();
+    }
+
+    /** Queues an event that is always delivered, in order with the results before it. */
+    void offerControl(Object event) {
+        mQueue.offer(new Item(event, null, true));
+        scheduleDrain();
+    }
+
+    /**
+     * Queues an event that is never dropped, blocking while {@code capacity} such events are still
+     * waiting for the main looper, so a fast producer cannot grow the queue without bound.
+     */
+    void offerAwaiting(Object event) throws InterruptedException {
+        Semaphore permits = mAwaitingPermits;
+        permits.acquire();
+        mQueue.offer(new Item(event, null, true, permits));
+        scheduleDrain();
+    }
+
+    private boolean dropOldest() {
+        for (Item candidate : mQueue) {
+            if (!candidate.mControl && mQueue.remove(candidate)) {
+                mDepth.decrementAndGet();
+                if (candidate.mKey != null) mLatestByKey.remove(candidate.mKey);
+                mDroppedCount.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleDrain() {
+        if (mDrainScheduled.compareAndSet(false, true)) mMainHandler.post(mDrain);
+    }
+
+    private void drain() {
+        mDrainScheduled.set(false);
+        EventChannel.EventSink sink = FlutterBarcodeScannerPlugin.getEventSink();
+        for (int i = 0; i < MAX_EVENTS_PER_DRAIN; i++) {
+            Item item = mQueue.poll();
+            if (item == null) return;
+            if (!item.mControl) mDepth.decrementAndGet();
+            item.release();
+
+            Object event = item.mKey != null ? mLatestByKey.remove(item.mKey) : item.mEvent;
+            if (event == null) continue;
+            if (sink != null) {
+                sink.success(event);
+                mDeliveredCount.incrementAndGet();
+                if (!item.mControl) {
+                    ScanMetrics.getDefault().getChannelSend().record(System.nanoTime() - item.mEnqueuedNanos);
+                }
+            } else {
+                mDroppedCount.incrementAndGet();
+            }
+        }
+        // Yield to the UI between passes so a burst cannot monopolise the main thread.
+        if (!mQueue.isEmpty()) scheduleDrain();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("depth", mDepth.get());
+        stats.put("maxDepth", mMaxDepth);
+        stats.put("capacity", mCapacity);
+        stats.put("policy", mPolicy.name());
+        stats.put("enqueued", mEnqueuedCount.get());
+        stats.put("delivered", mDeliveredCount.get());
+        stats.put("dropped", mDroppedCount.get());
+        stats.put("coalesced", mCoalescedCount.get());
+        return stats;
+    }
+}
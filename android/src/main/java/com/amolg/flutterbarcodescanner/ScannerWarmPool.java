@@ -0,0 +1,185 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.amolg.flutterbarcodescanner.camera.CameraWarmer;
+import com.amolg.flutterbarcodescanner.camera.PreviewBufferRing;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide detector, preview buffers and optionally a pre-opened camera, reused across
+ * scan sessions and released once no session has used them for the idle timeout. Detectors are
+ * reference-counted per format set, so warming or starting a scan for other formats never
+ * releases a detector a running session still decodes with.
+ */
+final class ScannerWarmPool {
+    private static final String TAG = "ScannerWarmPool";
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private static final ScannerWarmPool sInstance = new ScannerWarmPool();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mIdleRelease = this::release;
+    private final CameraWarmer mCameraWarmer = new CameraWarmer();
+
+    private static final class PooledDetector {
+        final BarcodeDetector mDetector;
+        int mUsers;
+
+        PooledDetector(BarcodeDetector detector) { mDetector = detector; }
+    }
+
+    // Keyed by format mask. Only the most recently requested format set is kept while unused.
+    private final Map<Integer, PooledDetector> mDetectors = new LinkedHashMap<>();
+    private int mWarmFormats;
+    private PreviewBufferRing mPreviewBuffers;
+    private int mActiveSessions;
+    private long mIdleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    private volatile long mScanRequestedMillis;
+    private volatile long mTimeToFirstFrameMillis = -1;
+
+    static ScannerWarmPool get() { return sInstance; }
+
+    private ScannerWarmPool() {}
+
+    /** Builds the detector and buffers, and opens the back camera if permitted, on a worker thread. */
+    void prepare(Context context, int formats, boolean openCamera, long idleTimeoutMillis) {
+        final Context appContext = context.getApplicationContext();
+        synchronized (this) {
+            if (idleTimeoutMillis > 0) mIdleTimeoutMillis = idleTimeoutMillis;
+        }
+        new Thread(() -> {
+            // Scan sessions take the pool lock on the main thread, so the slow detector build and
+            // camera open happen outside it. The warmer has its own lock.
+            boolean warm;
+            synchronized (ScannerWarmPool.this) { warm = mDetectors.containsKey(formats); }
+            BarcodeDetector detector = warm ? null : buildDetector(appContext, formats);
+            boolean permitted = ContextCompat.checkSelfPermission(appContext, Manifest.permission.CAMERA)
+                    == PackageManager.PERMISSION_GRANTED;
+            boolean open;
+            synchronized (ScannerWarmPool.this) {
+                warmDetector(appContext, formats, detector);
+                getPreviewBuffers();
+                open = openCamera && permitted && mActiveSessions == 0;
+                if (mActiveSessions == 0) scheduleIdleRelease();
+            }
+            if (open) mCameraWarmer.open(CameraSource.CAMERA_FACING_BACK);
+        }, TAG).start();
+    }
+
+    /** A detector for the formats that stays alive until {@link #releaseDetector} is called. */
+    synchronized BarcodeDetector acquireDetector(Context context, int formats) {
+        PooledDetector pooled = warmDetector(context, formats, null);
+        pooled.mUsers++;
+        return pooled.mDetector;
+    }
+
+    synchronized void releaseDetector(BarcodeDetector detector) {
+        for (Iterator<Map.Entry<Integer, PooledDetector>> it = mDetectors.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, PooledDetector> entry = it.next();
+            PooledDetector pooled = entry.getValue();
+            if (pooled.mDetector != detector) continue;
+            if (pooled.mUsers > 0) pooled.mUsers--;
+            if (pooled.mUsers == 0 && entry.getKey() != mWarmFormats) {
+                pooled.mDetector.release();
+                it.remove();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Makes the formats the warm set, dropping other detectors no session uses. A detector built
+     * outside the lock is pooled, or released if another thread pooled one first.
+     */
+    private PooledDetector warmDetector(Context context, int formats, @Nullable BarcodeDetector built) {
+        mWarmFormats = formats;
+        for (Iterator<Map.Entry<Integer, PooledDetector>> it = mDetectors.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, PooledDetector> entry = it.next();
+            if (entry.getKey() != formats && entry.getValue().mUsers == 0) {
+                entry.getValue().mDetector.release();
+                it.remove();
+            }
+        }
+        PooledDetector pooled = mDetectors.get(formats);
+        if (pooled == null) {
+            pooled = new PooledDetector(built != null ? built : buildDetector(context, formats));
+            mDetectors.put(formats, pooled);
+        } else if (built != null) {
+            built.release();
+        }
+        return pooled;
+    }
+
+    private static BarcodeDetector buildDetector(Context context, int formats) {
+        return new BarcodeDetector.Builder(context.getApplicationContext())
+                .setBarcodeFormats(formats)
+                .build();
+    }
+
+    synchronized PreviewBufferRing getPreviewBuffers() {
+        if (mPreviewBuffers == null) {
+            mPreviewBuffers = new PreviewBufferRing(
+                    CameraSource.getPreviewBufferCount(CameraSource.DEFAULT_PROCESSING_THREADS));
+        }
+        return mPreviewBuffers;
+    }
+
+    CameraWarmer getCameraWarmer() { return mCameraWarmer; }
+
+    synchronized void onSessionStarted() {
+        mActiveSessions++;
+        mHandler.removeCallbacks(mIdleRelease);
+    }
+
+    synchronized void onSessionEnded() {
+        if (mActiveSessions > 0) mActiveSessions--;
+        if (mActiveSessions == 0) scheduleIdleRelease();
+    }
+
+    void onScanRequested() { mScanRequestedMillis = SystemClock.elapsedRealtime(); }
+
+    /** Records time-to-first-frame for the scan most recently requested from Dart. */
+    void onFirstFrame() {
+        long requested = mScanRequestedMillis;
+        if (requested == 0) return;
+        mScanRequestedMillis = 0;
+        mTimeToFirstFrameMillis = SystemClock.elapsedRealtime() - requested;
+        Log.d(TAG, "Time to first frame: " + mTimeToFirstFrameMillis + " ms");
+    }
+
+    /** Milliseconds from the last scanBarcode call to its first preview frame, or -1. */
+    long getTimeToFirstFrameMillis() { return mTimeToFirstFrameMillis; }
+
+    private void scheduleIdleRelease() {
+        mHandler.removeCallbacks(mIdleRelease);
+        mHandler.postDelayed(mIdleRelease, mIdleTimeoutMillis);
+    }
+
+    synchronized void release() {
+        if (mActiveSessions > 0) return;
+        mCameraWarmer.release();
+        for (Iterator<PooledDetector> it = mDetectors.values().iterator(); it.hasNext(); ) {
+            PooledDetector pooled = it.next();
+            if (pooled.mUsers > 0) continue;
+            pooled.mDetector.release();
+            it.remove();
+        }
+        mPreviewBuffers = null;
+    }
+}
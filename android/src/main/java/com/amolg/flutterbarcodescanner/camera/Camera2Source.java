@@ -0,0 +1,594 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.Manifest;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Range;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+
+import com.google.android.gms.common.images.Size;
+import com.google.android.gms.vision.Detector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Camera2 backend. Preview frames arrive as YUV_420_888 images; the luma plane is copied
+ * straight into a pooled NV21-sized buffer whose chroma half stays neutral, which is all the
+ * barcode detector reads, so no per-pixel NV21 conversion is done.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class Camera2Source implements FrameSource {
+    private static final String TAG = "Camera2Source";
+    private static final int MAX_IMAGES = 2;
+
+    private Context mContext;
+    private final Object mCameraLock = new Object();
+    private int mFacing = CameraSource.CAMERA_FACING_BACK;
+    private float mRequestedFps = 30.0f;
+    private int mRequestedPreviewWidth = 1024;
+    private int mRequestedPreviewHeight = 768;
+    private boolean mContinuousFocus;
+    private boolean mTorch;
+
+    private Size mPreviewSize;
+    private int mRotation;
+    private Range<Integer> mFpsRange;
+    private Range<Integer>[] mAvailableFpsRanges;
+    private Rect mActiveArray;
+    private float mMaxZoom = 1f;
+    private float mZoom = 1f;
+    private boolean mFlashSupported;
+
+    private HandlerThread mCameraThread;
+    private Handler mCameraHandler;
+    private CameraDevice mCameraDevice;
+    private CameraCaptureSession mCaptureSession;
+    private CaptureRequest.Builder mRequestBuilder;
+    private ImageReader mImageReader;
+    private Surface mPreviewSurface;
+    private boolean mOwnsPreviewSurface;
+    private LumaBufferPool mBufferPool;
+
+    private FrameProcessor<?> mFrameProcessor;
+    private FrameGovernor mFrameGovernor;
+    private FrameQualityGate mQualityGate;
+
+    public static class Builder {
+        private final Camera2Source mCameraSource = new Camera2Source();
+        private int mProcessingThreadCount = CameraSource.DEFAULT_PROCESSING_THREADS;
+        private boolean mAdaptiveFrameRate;
+        private ScanRegion mScanRegion;
+
+        public <T> Builder(Context context, Detector<T> detector, Detector.Processor<T> processor) {
+            if (context == null) throw new IllegalArgumentException("No context supplied.");
+            if (detector == null) throw new IllegalArgumentException("No detector supplied.");
+            if (processor == null) throw new IllegalArgumentException("No processor supplied.");
+            mCameraSource.mContext = context;
+            mCameraSource.mFrameProcessor = new FrameProcessor<>(detector, processor);
+        }
+
+        public Builder setRequestedFps(float fps) {
+            if (fps <= 0) throw new IllegalArgumentException("Invalid fps: " + fps);
+            mCameraSource.mRequestedFps = fps;
+            return this;
+        }
+
+        public Builder setContinuousFocus(boolean continuous) {
+            mCameraSource.mContinuousFocus = continuous;
+            return this;
+        }
+
+        public Builder setTorch(boolean on) {
+            mCameraSource.mTorch = on;
+            return this;
+        }
+
+        public Builder setRequestedPreviewSize(int width, int height) {
+            final int MAX = 1000000;
+            if ((width <= 0) || (width > MAX) || (height <= 0) || (height > MAX)) {
+                throw new IllegalArgumentException("Invalid preview size: " + width + "x" + height);
+            }
+            mCameraSource.mRequestedPreviewWidth = width;
+            mCameraSource.mRequestedPreviewHeight = height;
+            return this;
+        }
+
+        public Builder setProcessingThreadCount(int count) {
+            if (count <= 0) throw new IllegalArgumentException("Invalid processing thread count: " + count);
+            mProcessingThreadCount = count;
+            return this;
+        }
+
+        public Builder setLumaPyramid(DetectionMapper<?> mapper) {
+            mCameraSource.mFrameProcessor.setPyramidMapper(mapper);
+            return this;
+        }
+
+        /** A shared detector outlives this source and is not released with it. */
+        public Builder setDetectorShared(boolean shared) {
+            mCameraSource.mFrameProcessor.setDetectorShared(shared);
+            return this;
+        }
+
+        public Builder setFirstFrameListener(Runnable listener) {
+            mCameraSource.mFrameProcessor.setFirstFrameListener(listener);
+            return this;
+        }
+
+        public Builder setTiledDecoder(TiledDecoder<?> decoder) {
+            mCameraSource.mFrameProcessor.setTiledDecoder(decoder);
+            return this;
+        }
+
+        public Builder setQualityGate(FrameQualityGate gate) {
+            mCameraSource.mQualityGate = gate;
+            mCameraSource.mFrameProcessor.setQualityGate(gate);
+            return this;
+        }
+
+        /** Skips detection while the scene is unchanged since the last successful decode. */
+        public Builder setSceneChangeDetector(SceneChangeDetector detector) {
+            mCameraSource.mFrameProcessor.setSceneChangeDetector(detector);
+            return this;
+        }
+
+        /** Writes every preview frame to the recorder for later replay. */
+        public Builder setFrameRecorder(FrameRecorder recorder) {
+            mCameraSource.mFrameProcessor.setFrameRecorder(recorder);
+            return this;
+        }
+
+        public Builder setAdaptiveFrameRate(boolean adaptive) {
+            mAdaptiveFrameRate = adaptive;
+            return this;
+        }
+
+        public Builder setScanRegion(ScanRegion region) {
+            mScanRegion = region;
+            return this;
+        }
+
+        public Builder setFacing(int facing) {
+            if ((facing != CameraSource.CAMERA_FACING_BACK) && (facing != CameraSource.CAMERA_FACING_FRONT)) {
+                throw new IllegalArgumentException("Invalid camera: " + facing);
+            }
+            mCameraSource.mFacing = facing;
+            return this;
+        }
+
+        public Camera2Source build() {
+            FrameProcessor<?> frameProcessor = mCameraSource.mFrameProcessor;
+            frameProcessor.setThreadCount(mProcessingThreadCount);
+            frameProcessor.setScanRegion(mScanRegion);
+            if (mAdaptiveFrameRate) {
+                mCameraSource.mFrameGovernor = new FrameGovernor(mProcessingThreadCount, mCameraSource.mRequestedFps);
+                frameProcessor.setFrameGovernor(mCameraSource.mFrameGovernor);
+            }
+            return mCameraSource;
+        }
+    }
+
+    private Camera2Source() {}
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    @Override
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public Camera2Source start(SurfaceHolder surfaceHolder) throws IOException {
+        return start(surfaceHolder, null);
+    }
+
+    @Override
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public Camera2Source start(SurfaceTexture surfaceTexture) throws IOException {
+        return start(null, surfaceTexture);
+    }
+
+    @RequiresPermission(Manifest.permission.CAMERA)
+    private Camera2Source start(@Nullable SurfaceHolder surfaceHolder, @Nullable SurfaceTexture surfaceTexture)
+            throws IOException {
+        synchronized (mCameraLock) {
+            if (mCameraThread != null) return this;
+
+            CameraManager manager = (CameraManager) mContext.getSystemService(Context.CAMERA_SERVICE);
+            String cameraId;
+            try {
+                cameraId = getIdForRequestedCamera(manager, mFacing);
+                if (cameraId == null) throw new RuntimeException("Could not find requested camera.");
+                configure(manager.getCameraCharacteristics(cameraId));
+            } catch (CameraAccessException e) {
+                throw new IOException("Could not access camera.", e);
+            }
+
+            int width = mPreviewSize.getWidth();
+            int height = mPreviewSize.getHeight();
+
+            mCameraThread = new HandlerThread(TAG);
+            mCameraThread.start();
+            mCameraHandler = new Handler(mCameraThread.getLooper());
+
+            mBufferPool = new LumaBufferPool(
+                    CameraSource.getPreviewBufferCount(mFrameProcessor.getThreadCount()), width, height);
+            mImageReader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+            mImageReader.setOnImageAvailableListener(new ImageAvailableListener(), mCameraHandler);
+
+            if (surfaceHolder != null) {
+                surfaceHolder.setFixedSize(width, height);
+                mPreviewSurface = surfaceHolder.getSurface();
+            } else {
+                surfaceTexture.setDefaultBufferSize(width, height);
+                mPreviewSurface = new Surface(surfaceTexture);
+                mOwnsPreviewSurface = true;
+            }
+
+            mFrameProcessor.start(mBufferPool, width, height, mRotation, mFacing);
+            try {
+                manager.openCamera(cameraId, new DeviceStateCallback(), mCameraHandler);
+            } catch (CameraAccessException | SecurityException e) {
+                stop();
+                throw new IOException("Could not open camera.", e);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void stop() {
+        synchronized (mCameraLock) {
+            mFrameProcessor.stop();
+
+            if (mCaptureSession != null) {
+                mCaptureSession.close();
+                mCaptureSession = null;
+            }
+            if (mCameraDevice != null) {
+                mCameraDevice.close();
+                mCameraDevice = null;
+            }
+            if (mImageReader != null) {
+                mImageReader.close();
+                mImageReader = null;
+            }
+            if (mCameraThread != null) {
+                mCameraThread.quitSafely();
+                mCameraThread = null;
+                mCameraHandler = null;
+            }
+            mRequestBuilder = null;
+            if (mOwnsPreviewSurface && mPreviewSurface != null) mPreviewSurface.release();
+            mOwnsPreviewSurface = false;
+            mPreviewSurface = null;
+        }
+    }
+
+    @Override
+    public void release() {
+        synchronized (mCameraLock) {
+            stop();
+            mFrameProcessor.release();
+        }
+    }
+
+    @Override public Size getPreviewSize() { return mPreviewSize; }
+    @Override public int getCameraFacing() { return mFacing; }
+    @Override public int getRotation() { return mRotation; }
+    @Override public boolean isContinuousFocus() { return mContinuousFocus; }
+    @Nullable public FrameGovernor getFrameGovernor() { return mFrameGovernor; }
+
+    @Override
+    public Future<Integer> doZoom(final float scale) {
+        return postControl(0, () -> {
+            if (mActiveArray == null || mMaxZoom <= 1f) return 0;
+            mZoom = Math.max(1f, Math.min(mMaxZoom, mZoom * scale));
+            if (mRequestBuilder != null) {
+                mRequestBuilder.set(CaptureRequest.SCALER_CROP_REGION, getCropRegion());
+                updateRepeatingRequest();
+            }
+            return Math.round(mZoom * 100);
+        });
+    }
+
+    @Override
+    public Future<Boolean> setTorch(final boolean on) {
+        return postControl(false, () -> {
+            if (!mFlashSupported) return false;
+            mTorch = on;
+            if (mRequestBuilder != null) {
+                mRequestBuilder.set(CaptureRequest.FLASH_MODE, getFlashMode());
+                updateRepeatingRequest();
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Runs a control change under the camera lock on the camera thread, so the caller never waits
+     * for setRepeatingRequest(). Completes with {@code closedResult} if the camera is not started.
+     */
+    private <T> Future<T> postControl(T closedResult, final Callable<T> change) {
+        FutureTask<T> future = new FutureTask<>(() -> {
+            synchronized (mCameraLock) {
+                return mCameraHandler != null ? change.call() : closedResult;
+            }
+        });
+        Handler handler;
+        synchronized (mCameraLock) { handler = mCameraHandler; }
+        // A quit camera thread no longer runs anything, so finish the request here.
+        if (handler == null || !handler.post(future)) future.run();
+        return future;
+    }
+
+    private static String getIdForRequestedCamera(CameraManager manager, int facing) throws CameraAccessException {
+        int lensFacing = facing == CameraSource.CAMERA_FACING_FRONT
+                ? CameraCharacteristics.LENS_FACING_FRONT
+                : CameraCharacteristics.LENS_FACING_BACK;
+        for (String id : manager.getCameraIdList()) {
+            Integer value = manager.getCameraCharacteristics(id).get(CameraCharacteristics.LENS_FACING);
+            if (value != null && value == lensFacing) return id;
+        }
+        return null;
+    }
+
+    private void configure(CameraCharacteristics characteristics) {
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) throw new RuntimeException("Could not find suitable preview size.");
+
+        android.util.Size selected = null;
+        int minDiff = Integer.MAX_VALUE;
+        for (android.util.Size size : map.getOutputSizes(ImageFormat.YUV_420_888)) {
+            int diff = Math.abs(size.getWidth() - mRequestedPreviewWidth)
+                    + Math.abs(size.getHeight() - mRequestedPreviewHeight);
+            if (diff < minDiff) {
+                selected = size;
+                minDiff = diff;
+            }
+        }
+        if (selected == null) throw new RuntimeException("Could not find suitable preview size.");
+        mPreviewSize = new Size(selected.getWidth(), selected.getHeight());
+
+        mAvailableFpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        mFpsRange = selectFpsRange(mRequestedFps);
+
+        Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        int orientation = sensorOrientation != null ? sensorOrientation : 90;
+        int degrees = CameraSource.getDisplayDegrees(mContext);
+        int angle = mFacing == CameraSource.CAMERA_FACING_FRONT
+                ? (orientation + degrees) % 360
+                : (orientation - degrees + 360) % 360;
+        mRotation = angle / 90;
+
+        mActiveArray = characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        Float maxZoom = characteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+        mMaxZoom = maxZoom != null ? maxZoom : 1f;
+        mZoom = 1f;
+
+        Boolean flashAvailable = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+        mFlashSupported = flashAvailable != null && flashAvailable;
+    }
+
+    @Nullable
+    private Range<Integer> selectFpsRange(float desiredFps) {
+        if (mAvailableFpsRanges == null) return null;
+        int desired = Math.round(desiredFps);
+        Range<Integer> selected = null;
+        int minDiff = Integer.MAX_VALUE;
+        for (Range<Integer> range : mAvailableFpsRanges) {
+            int diff = Math.abs(desired - range.getLower()) + Math.abs(desired - range.getUpper());
+            if (diff < minDiff) {
+                selected = range;
+                minDiff = diff;
+            }
+        }
+        return selected;
+    }
+
+    private Rect getCropRegion() {
+        int cropWidth = (int) (mActiveArray.width() / mZoom);
+        int cropHeight = (int) (mActiveArray.height() / mZoom);
+        int left = mActiveArray.left + (mActiveArray.width() - cropWidth) / 2;
+        int top = mActiveArray.top + (mActiveArray.height() - cropHeight) / 2;
+        return new Rect(left, top, left + cropWidth, top + cropHeight);
+    }
+
+    private int getFlashMode() {
+        return mTorch ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF;
+    }
+
+    private void updateRepeatingRequest() {
+        if (mCaptureSession == null || mRequestBuilder == null) return;
+        try {
+            mCaptureSession.setRepeatingRequest(mRequestBuilder.build(),
+                    mQualityGate != null ? new FocusStateCallback() : null, mCameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Could not update capture request.", e);
+        }
+    }
+
+    private void createCaptureSession() throws CameraAccessException {
+        mCameraDevice.createCaptureSession(
+                Arrays.asList(mPreviewSurface, mImageReader.getSurface()),
+                new SessionStateCallback(), mCameraHandler);
+    }
+
+    private void startRepeatingRequest(CameraCaptureSession session) throws CameraAccessException {
+        mCaptureSession = session;
+        mRequestBuilder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+        mRequestBuilder.addTarget(mPreviewSurface);
+        mRequestBuilder.addTarget(mImageReader.getSurface());
+        mRequestBuilder.set(CaptureRequest.CONTROL_MODE, CaptureRequest.CONTROL_MODE_AUTO);
+        mRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
+        if (mContinuousFocus) {
+            mRequestBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+        }
+        if (mFpsRange != null) {
+            mRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mFpsRange);
+        }
+        if (mFlashSupported) {
+            mRequestBuilder.set(CaptureRequest.FLASH_MODE, getFlashMode());
+        }
+        if (mActiveArray != null) {
+            mRequestBuilder.set(CaptureRequest.SCALER_CROP_REGION, getCropRegion());
+        }
+        updateRepeatingRequest();
+    }
+
+    private static void copyLuma(Image.Plane plane, int width, int height, byte[] dst) {
+        ByteBuffer src = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        if (rowStride == width) {
+            src.get(dst, 0, width * height);
+            return;
+        }
+        for (int row = 0; row < height; row++) {
+            src.position(row * rowStride);
+            src.get(dst, row * width, width);
+        }
+    }
+
+    private class DeviceStateCallback extends CameraDevice.StateCallback {
+        @Override public void onOpened(@NonNull CameraDevice camera) {
+            synchronized (mCameraLock) {
+                if (mImageReader == null) {
+                    camera.close();
+                    return;
+                }
+                mCameraDevice = camera;
+                try {
+                    createCaptureSession();
+                } catch (CameraAccessException e) {
+                    Log.e(TAG, "Could not create capture session.", e);
+                }
+            }
+        }
+
+        @Override public void onDisconnected(@NonNull CameraDevice camera) {
+            synchronized (mCameraLock) {
+                camera.close();
+                if (mCameraDevice == camera) mCameraDevice = null;
+            }
+        }
+
+        @Override public void onError(@NonNull CameraDevice camera, int error) {
+            Log.e(TAG, "Camera error: " + error);
+            onDisconnected(camera);
+        }
+    }
+
+    private class SessionStateCallback extends CameraCaptureSession.StateCallback {
+        @Override public void onConfigured(@NonNull CameraCaptureSession session) {
+            synchronized (mCameraLock) {
+                if (mCameraDevice == null) {
+                    session.close();
+                    return;
+                }
+                try {
+                    startRepeatingRequest(session);
+                } catch (CameraAccessException | IllegalStateException e) {
+                    Log.e(TAG, "Could not start preview.", e);
+                }
+            }
+        }
+
+        @Override public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+            Log.e(TAG, "Could not configure capture session.");
+        }
+    }
+
+    private class FocusStateCallback extends CameraCaptureSession.CaptureCallback {
+        @Override public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                                 @NonNull CaptureRequest request,
+                                                 @NonNull TotalCaptureResult result) {
+            Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
+            if (afState != null) {
+                mQualityGate.setFocusMoving(afState == CaptureResult.CONTROL_AF_STATE_PASSIVE_SCAN
+                        || afState == CaptureResult.CONTROL_AF_STATE_ACTIVE_SCAN);
+            }
+        }
+    }
+
+    private class ImageAvailableListener implements ImageReader.OnImageAvailableListener {
+        @Override public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireLatestImage();
+            if (image == null) return;
+            try {
+                if (mFrameGovernor != null) {
+                    if (!mFrameGovernor.shouldProcess(SystemClock.elapsedRealtime())) {
+                        mFrameProcessor.onFrameThrottled();
+                        return;
+                    }
+                    float fps = mFrameGovernor.consumePreviewFpsChange();
+                    if (fps > 0) updateFpsRange(fps);
+                }
+                ByteBuffer buffer = mBufferPool.acquire();
+                if (buffer == null) {
+                    mFrameProcessor.onFrameUnbuffered();
+                    return;
+                }
+                copyLuma(image.getPlanes()[0], image.getWidth(), image.getHeight(), buffer.array());
+                mFrameProcessor.setNextFrame(buffer);
+            } finally {
+                image.close();
+            }
+        }
+
+        private void updateFpsRange(float fps) {
+            synchronized (mCameraLock) {
+                Range<Integer> range = selectFpsRange(fps);
+                if (range == null || range.equals(mFpsRange) || mRequestBuilder == null) return;
+                mFpsRange = range;
+                mRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, range);
+                updateRepeatingRequest();
+            }
+        }
+    }
+
+    private static final class LumaBufferPool implements FrameProcessor.BufferReleaser {
+        private final ArrayDeque<ByteBuffer> mFree = new ArrayDeque<>();
+
+        LumaBufferPool(int count, int width, int height) {
+            int lumaSize = width * height;
+            int size = ScanRegion.getNv21Size(width, height);
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[size];
+                Arrays.fill(bytes, lumaSize, size, (byte) 128);
+                mFree.add(ByteBuffer.wrap(bytes));
+            }
+        }
+
+        synchronized ByteBuffer acquire() { return mFree.poll(); }
+
+        @Override public synchronized void release(ByteBuffer buffer) { mFree.add(buffer); }
+    }
+}
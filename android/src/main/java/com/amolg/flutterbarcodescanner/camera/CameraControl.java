@@ -0,0 +1,165 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Applies parameter changes to a legacy {@link Camera} on a dedicated control thread. Changes
+ * edit a cached {@link Camera.Parameters} snapshot instead of a fresh getParameters() copy, and
+ * every change queued within one tick is written with a single setParameters() call, so a
+ * burst of zoom or flash requests neither serializes the parameter string per request nor
+ * blocks the calling thread behind the camera lock.
+ */
+@SuppressWarnings("deprecation")
+final class CameraControl {
+    private static final String TAG = "CameraControl";
+    /** Minimum time between two setParameters() calls. */
+    private static final long TICK_MILLIS = 16;
+
+    interface Change<T> {
+        /** Edits the cached parameters on the control thread and returns the request's result. */
+        T apply(Camera.Parameters parameters);
+    }
+
+    interface CommitListener {
+        /** Called on the control thread with the parameters the camera now has. */
+        void onCommitted(Camera.Parameters parameters);
+    }
+
+    private static final class Request<T> {
+        final Change<T> mChange;
+        final T mClosedResult;
+        T mResult;
+        final FutureTask<T> mFuture = new FutureTask<>(() -> mResult);
+
+        Request(Change<T> change, T closedResult) {
+            mChange = change;
+            mClosedResult = closedResult;
+            mResult = closedResult;
+        }
+
+        void apply(Camera.Parameters parameters) { mResult = mChange.apply(parameters); }
+        void fail() { mResult = mClosedResult; }
+    }
+
+    private final Object mCameraLock;
+    private final CommitListener mCommitListener;
+    private final HandlerThread mThread = new HandlerThread(TAG);
+    private final Handler mHandler;
+    private final Runnable mApply = this::apply;
+
+    private final List<Request<?>> mPending = new ArrayList<>();
+    private boolean mScheduled;
+    private long mLastApplyMillis;
+
+    // Guarded by mCameraLock.
+    private Camera mCamera;
+    private Camera.Parameters mParameters;
+
+    /** {@code cameraLock} is the lock the owner holds while opening and releasing the camera. */
+    CameraControl(Object cameraLock, CommitListener commitListener) {
+        mCameraLock = cameraLock;
+        mCommitListener = commitListener;
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /** Starts applying changes to an opened camera; {@code parameters} must be what it was last set to. */
+    void attach(Camera camera, Camera.Parameters parameters) {
+        synchronized (mCameraLock) {
+            mCamera = camera;
+            mParameters = parameters;
+        }
+    }
+
+    /** Called before the camera is released; later requests complete with their closed result. */
+    void detach() {
+        synchronized (mCameraLock) {
+            mCamera = null;
+            mParameters = null;
+        }
+    }
+
+    /**
+     * Queues a change for the next tick. The future completes once it was written to the camera,
+     * or with {@code closedResult} if no camera is open by then or the camera rejected it.
+     */
+    <T> Future<T> submit(T closedResult, Change<T> change) {
+        Request<T> request = new Request<>(change, closedResult);
+        boolean schedule;
+        long delayMillis;
+        synchronized (mPending) {
+            mPending.add(request);
+            schedule = !mScheduled;
+            mScheduled = true;
+            delayMillis = Math.max(0, mLastApplyMillis + TICK_MILLIS - SystemClock.uptimeMillis());
+        }
+        // A quit control thread no longer runs anything, so finish the request here.
+        if (schedule && !mHandler.postDelayed(mApply, delayMillis)) apply();
+        return request.mFuture;
+    }
+
+    private void apply() {
+        List<Request<?>> requests;
+        synchronized (mPending) {
+            requests = new ArrayList<>(mPending);
+            mPending.clear();
+            mScheduled = false;
+            mLastApplyMillis = SystemClock.uptimeMillis();
+        }
+
+        synchronized (mCameraLock) {
+            if (mCamera != null && !requests.isEmpty()) {
+                for (Request<?> request : requests) request.apply(mParameters);
+                if (!commit()) {
+                    // Something in the batch was rejected: retry the changes one at a time from what
+                    // the camera actually has, so only the bad one fails.
+                    for (Request<?> request : requests) {
+                        request.apply(mParameters);
+                        if (!commit()) request.fail();
+                    }
+                }
+                mCommitListener.onCommitted(mParameters);
+            }
+        }
+        for (Request<?> request : requests) request.mFuture.run();
+    }
+
+    /** Writes the snapshot, or reloads it from the camera if the driver rejects it. */
+    private boolean commit() {
+        try {
+            mCamera.setParameters(mParameters);
+            return true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "setParameters failed", e);
+        }
+        try {
+            mParameters = mCamera.getParameters();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "getParameters failed", e);
+        }
+        return false;
+    }
+
+    /** Stops the control thread; requests still queued complete with their closed result. */
+    void release() {
+        detach();
+        mThread.quit();
+        apply();
+    }
+
+    /** An already completed future, for sources whose controls take effect immediately. */
+    static <T> Future<T> completed(T result) {
+        FutureTask<T> future = new FutureTask<>(() -> result);
+        future.run();
+        return future;
+    }
+}
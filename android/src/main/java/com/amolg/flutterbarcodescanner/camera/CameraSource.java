@@ -20,26 +20,24 @@ import androidx.annotation.StringDef;
 
 import com.google.android.gms.common.images.Size;
 import com.google.android.gms.vision.Detector;
-import com.google.android.gms.vision.Frame;
 
 import java.io.IOException;
-import java.lang.Thread.State;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("deprecation")
-public class CameraSource {
+public class CameraSource implements FrameSource {
     @SuppressLint("InlinedApi")
     public static final int CAMERA_FACING_BACK = Camera.CameraInfo.CAMERA_FACING_BACK;
     @SuppressLint("InlinedApi")
     public static final int CAMERA_FACING_FRONT = Camera.CameraInfo.CAMERA_FACING_FRONT;
     private static final int DUMMY_TEXTURE_NAME = 100;
-    private static final float ASPECT_RATIO_TOLERANCE = 0.01f;
+    private static final int MIN_PREVIEW_BUFFERS = 4;
+    public static final int DEFAULT_PROCESSING_THREADS =
+            Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
 
     private Context mContext;
     private final Object mCameraLock = new Object();
@@ -52,16 +50,22 @@ public class CameraSource {
     private int mRequestedPreviewWidth = 1024;
     private int mRequestedPreviewHeight = 768;
 
-    private String mFocusMode = null;
-    private String mFlashMode = null;
+    private volatile String mFocusMode = null;
+    private volatile String mFlashMode = null;
+    private CameraControl mControl;
+
+    private ScanRegion mScanRegion;
+    private FrameGovernor mFrameGovernor;
+    private FrameQualityGate mQualityGate;
+    private AutoFocusMoveCallback mAutoFocusMoveCallback;
+    private CameraProvider mCameraProvider;
 
     private SurfaceView mDummySurfaceView;
     private SurfaceTexture mDummySurfaceTexture;
 
-    private Thread mProcessingThread;
-    private FrameProcessingRunnable mFrameProcessor;
+    private FrameProcessor<?> mFrameProcessor;
 
-    private final Map<byte[], ByteBuffer> mBytesToByteBuffer = new HashMap<>();
+    private PreviewBufferRing mPreviewBuffers;
 
     @StringDef({
             Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE,
@@ -86,14 +90,28 @@ public class CameraSource {
     private @interface FlashMode {}
 
     public static class Builder {
-        private final Detector<?> mDetector;
         private final CameraSource mCameraSource = new CameraSource();
+        private int mProcessingThreadCount = 1;
+        private boolean mAdaptiveFrameRate;
 
         public Builder(Context context, Detector<?> detector) {
             if (context == null) throw new IllegalArgumentException("No context supplied.");
             if (detector == null) throw new IllegalArgumentException("No detector supplied.");
-            mDetector = detector;
             mCameraSource.mContext = context;
+            mCameraSource.mFrameProcessor = new FrameProcessor<>(detector, null);
+        }
+
+        /**
+         * Detection runs on a pool of worker threads and results are handed to the processor in
+         * frame order, instead of through the processor set on the detector.
+         */
+        public <T> Builder(Context context, Detector<T> detector, Detector.Processor<T> processor) {
+            if (context == null) throw new IllegalArgumentException("No context supplied.");
+            if (detector == null) throw new IllegalArgumentException("No detector supplied.");
+            if (processor == null) throw new IllegalArgumentException("No processor supplied.");
+            mCameraSource.mContext = context;
+            mCameraSource.mFrameProcessor = new FrameProcessor<>(detector, processor);
+            mProcessingThreadCount = DEFAULT_PROCESSING_THREADS;
         }
 
         public Builder setRequestedFps(float fps) {
@@ -122,6 +140,71 @@ public class CameraSource {
             return this;
         }
 
+        public Builder setProcessingThreadCount(int count) {
+            if (count <= 0) throw new IllegalArgumentException("Invalid processing thread count: " + count);
+            mProcessingThreadCount = count;
+            return this;
+        }
+
+        public Builder setLumaPyramid(DetectionMapper<?> mapper) {
+            mCameraSource.mFrameProcessor.setPyramidMapper(mapper);
+            return this;
+        }
+
+        public Builder setCameraProvider(CameraProvider provider) {
+            mCameraSource.mCameraProvider = provider;
+            return this;
+        }
+
+        /** A shared detector outlives this source and is not released with it. */
+        public Builder setDetectorShared(boolean shared) {
+            mCameraSource.mFrameProcessor.setDetectorShared(shared);
+            return this;
+        }
+
+        public Builder setFirstFrameListener(Runnable listener) {
+            mCameraSource.mFrameProcessor.setFirstFrameListener(listener);
+            return this;
+        }
+
+        public Builder setTiledDecoder(TiledDecoder<?> decoder) {
+            mCameraSource.mFrameProcessor.setTiledDecoder(decoder);
+            return this;
+        }
+
+        public Builder setQualityGate(FrameQualityGate gate) {
+            mCameraSource.mQualityGate = gate;
+            mCameraSource.mFrameProcessor.setQualityGate(gate);
+            return this;
+        }
+
+        /** Skips detection while the scene is unchanged since the last successful decode. */
+        public Builder setSceneChangeDetector(SceneChangeDetector detector) {
+            mCameraSource.mFrameProcessor.setSceneChangeDetector(detector);
+            return this;
+        }
+
+        /** Writes every preview frame to the recorder for later replay. */
+        public Builder setFrameRecorder(FrameRecorder recorder) {
+            mCameraSource.mFrameProcessor.setFrameRecorder(recorder);
+            return this;
+        }
+
+        public Builder setAdaptiveFrameRate(boolean adaptive) {
+            mAdaptiveFrameRate = adaptive;
+            return this;
+        }
+
+        public Builder setPreviewBufferRing(PreviewBufferRing ring) {
+            mCameraSource.mPreviewBuffers = ring;
+            return this;
+        }
+
+        public Builder setScanRegion(ScanRegion region) {
+            mCameraSource.mScanRegion = region;
+            return this;
+        }
+
         public Builder setFacing(int facing) {
             if ((facing != CAMERA_FACING_BACK) && (facing != CAMERA_FACING_FRONT)) {
                 throw new IllegalArgumentException("Invalid camera: " + facing);
@@ -131,7 +214,19 @@ public class CameraSource {
         }
 
         public CameraSource build() {
-            mCameraSource.mFrameProcessor = mCameraSource.new FrameProcessingRunnable(mDetector);
+            mCameraSource.mControl = new CameraControl(mCameraSource.mCameraLock, mCameraSource::onParametersCommitted);
+            FrameProcessor<?> frameProcessor = mCameraSource.mFrameProcessor;
+            frameProcessor.setThreadCount(mProcessingThreadCount);
+            frameProcessor.setScanRegion(mCameraSource.mScanRegion);
+            if (mCameraSource.mPreviewBuffers == null) {
+                mCameraSource.mPreviewBuffers = new PreviewBufferRing(
+                        getPreviewBufferCount(frameProcessor.getThreadCount()));
+            }
+            if (mAdaptiveFrameRate) {
+                mCameraSource.mFrameGovernor = new FrameGovernor(
+                        frameProcessor.getThreadCount(), mCameraSource.mRequestedFps);
+                frameProcessor.setFrameGovernor(mCameraSource.mFrameGovernor);
+            }
             return mCameraSource;
         }
     }
@@ -141,10 +236,15 @@ public class CameraSource {
     public interface AutoFocusCallback { void onAutoFocus(boolean success); }
     public interface AutoFocusMoveCallback { void onAutoFocusMoving(boolean start); }
 
+    /** Supplies an already opened camera for the given id, or null to open one. */
+    public interface CameraProvider { Camera takeCamera(int cameraId); }
+
+    @Override
     public void release() {
         synchronized (mCameraLock) {
             stop();
             mFrameProcessor.release();
+            mControl.release();
         }
     }
 
@@ -162,15 +262,13 @@ public class CameraSource {
                 mDummySurfaceView = new SurfaceView(mContext);
                 mCamera.setPreviewDisplay(mDummySurfaceView.getHolder());
             }
+            startFrameProcessor();
             mCamera.startPreview();
-
-            mProcessingThread = new Thread(mFrameProcessor);
-            mFrameProcessor.setActive(true);
-            mProcessingThread.start();
         }
         return this;
     }
 
+    @Override
     @RequiresPermission(Manifest.permission.CAMERA)
     public CameraSource start(SurfaceHolder surfaceHolder) throws IOException {
         synchronized (mCameraLock) {
@@ -178,26 +276,34 @@ public class CameraSource {
 
             mCamera = createCamera();
             mCamera.setPreviewDisplay(surfaceHolder);
+            startFrameProcessor();
             mCamera.startPreview();
+        }
+        return this;
+    }
+
+    @Override
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public CameraSource start(SurfaceTexture surfaceTexture) throws IOException {
+        synchronized (mCameraLock) {
+            if (mCamera != null) return this;
 
-            mProcessingThread = new Thread(mFrameProcessor);
-            mFrameProcessor.setActive(true);
-            mProcessingThread.start();
+            mCamera = createCamera();
+            mCamera.setPreviewTexture(surfaceTexture);
+            startFrameProcessor();
+            mCamera.startPreview();
         }
         return this;
     }
 
+    @Override
     public void stop() {
         synchronized (mCameraLock) {
-            mFrameProcessor.setActive(false);
-            if (mProcessingThread != null) {
-                try { mProcessingThread.join(); } catch (InterruptedException ignored) {}
-                mProcessingThread = null;
-            }
-
-            mBytesToByteBuffer.clear();
+            mFrameProcessor.stop();
 
             if (mCamera != null) {
+                mControl.detach();
+                mPreviewBuffers.detach();
                 mCamera.stopPreview();
                 mCamera.setPreviewCallbackWithBuffer(null);
                 try {
@@ -213,26 +319,40 @@ public class CameraSource {
         }
     }
 
-    public Size getPreviewSize() { return mPreviewSize; }
-    public int getCameraFacing() { return mFacing; }
+    public static int getPreviewBufferCount(int processingThreadCount) {
+        return Math.max(MIN_PREVIEW_BUFFERS, processingThreadCount + 2);
+    }
 
-    public int doZoom(float scale) {
-        synchronized (mCameraLock) {
-            if (mCamera == null) return 0;
-            int currentZoom = 0;
-            int maxZoom;
-            Camera.Parameters parameters = mCamera.getParameters();
-            if (!parameters.isZoomSupported()) return currentZoom;
-            maxZoom = parameters.getMaxZoom();
+    private void startFrameProcessor() {
+        mFrameProcessor.start(mPreviewBuffers, mPreviewSize.getWidth(), mPreviewSize.getHeight(), mRotation, mFacing);
+    }
 
-            currentZoom = parameters.getZoom() + 1;
-            float newZoom = (scale > 1) ? (currentZoom + scale * (maxZoom / 10f)) : (currentZoom * scale);
-            currentZoom = Math.round(newZoom) - 1;
-            if (currentZoom < 0) currentZoom = 0; else if (currentZoom > maxZoom) currentZoom = maxZoom;
-            parameters.setZoom(currentZoom);
-            mCamera.setParameters(parameters);
-            return currentZoom;
-        }
+    @Override public Size getPreviewSize() { return mPreviewSize; }
+    @Override public int getCameraFacing() { return mFacing; }
+    @Override public int getRotation() { return mRotation; }
+    @Nullable public ScanRegion getScanRegion() { return mScanRegion; }
+    @Nullable public FrameGovernor getFrameGovernor() { return mFrameGovernor; }
+    public PreviewBufferRing getPreviewBufferRing() { return mPreviewBuffers; }
+
+    /** Zoom ratio applied in hundredths, or 0 if zoom is not supported or no camera is open. */
+    @Override
+    public Future<Integer> doZoom(final float scale) {
+        return mControl.submit(0, parameters -> zoom(parameters, scale));
+    }
+
+    /** Steps the zoom index of {@code parameters} and returns the new zoom ratio in hundredths. */
+    static int zoom(Camera.Parameters parameters, float scale) {
+        if (!parameters.isZoomSupported()) return 0;
+        int maxZoom = parameters.getMaxZoom();
+
+        int currentZoom = parameters.getZoom() + 1;
+        float newZoom = (scale > 1) ? (currentZoom + scale * (maxZoom / 10f)) : (currentZoom * scale);
+        currentZoom = Math.round(newZoom) - 1;
+        if (currentZoom < 0) currentZoom = 0; else if (currentZoom > maxZoom) currentZoom = maxZoom;
+        parameters.setZoom(currentZoom);
+        // getZoomRatios() is in hundredths as well, so both backends report the same unit.
+        List<Integer> ratios = parameters.getZoomRatios();
+        return ratios != null && currentZoom < ratios.size() ? ratios.get(currentZoom) : 0;
     }
 
     public void takePicture(ShutterCallback shutter, PictureCallback jpeg) {
@@ -249,37 +369,41 @@ public class CameraSource {
 
     @Nullable @FocusMode public String getFocusMode() { return mFocusMode; }
 
-    public boolean setFocusMode(@FocusMode String mode) {
-        synchronized (mCameraLock) {
-            if (mCamera != null && mode != null) {
-                Camera.Parameters parameters = mCamera.getParameters();
-                if (parameters.getSupportedFocusModes().contains(mode)) {
-                    parameters.setFocusMode(mode);
-                    mCamera.setParameters(parameters);
-                    mFocusMode = mode;
-                    return true;
-                }
-            }
-            return false;
-        }
+    @Override
+    public boolean isContinuousFocus() {
+        String mode = mFocusMode;
+        return Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE.equals(mode)
+                || Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO.equals(mode);
+    }
+
+    /** Modes are only reported once the camera accepted them. */
+    private void onParametersCommitted(Camera.Parameters parameters) {
+        mFocusMode = parameters.getFocusMode();
+        mFlashMode = parameters.getFlashMode();
+    }
+
+    public Future<Boolean> setFocusMode(@FocusMode final String mode) {
+        return mControl.submit(false, parameters -> {
+            if (mode == null || !parameters.getSupportedFocusModes().contains(mode)) return false;
+            parameters.setFocusMode(mode);
+            return true;
+        });
     }
 
     @Nullable @FlashMode public String getFlashMode() { return mFlashMode; }
 
-    public boolean setFlashMode(@FlashMode String mode) {
-        synchronized (mCameraLock) {
-            if (mCamera != null && mode != null) {
-                Camera.Parameters parameters = mCamera.getParameters();
-                if (parameters.getSupportedFlashModes() != null &&
-                        parameters.getSupportedFlashModes().contains(mode)) {
-                    parameters.setFlashMode(mode);
-                    mCamera.setParameters(parameters);
-                    mFlashMode = mode;
-                    return true;
-                }
-            }
-            return false;
-        }
+    public Future<Boolean> setFlashMode(@FlashMode final String mode) {
+        return mControl.submit(false, parameters -> {
+            List<String> supported = parameters.getSupportedFlashModes();
+            if (mode == null || supported == null || !supported.contains(mode)) return false;
+            parameters.setFlashMode(mode);
+            return true;
+        });
+    }
+
+    @Override
+    public Future<Boolean> setTorch(boolean on) {
+        return setFlashMode(on ? Camera.Parameters.FLASH_MODE_TORCH : Camera.Parameters.FLASH_MODE_OFF);
     }
 
     public void autoFocus(@Nullable AutoFocusCallback cb) {
@@ -307,18 +431,23 @@ public class CameraSource {
     public boolean setAutoFocusMoveCallback(@Nullable AutoFocusMoveCallback cb) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return false;
         synchronized (mCameraLock) {
-            if (mCamera != null) {
-                CameraAutoFocusMoveCallback autoFocusMoveCallback = null;
-                if (cb != null) {
-                    autoFocusMoveCallback = new CameraAutoFocusMoveCallback();
-                    autoFocusMoveCallback.mDelegate = cb;
-                }
-                mCamera.setAutoFocusMoveCallback(autoFocusMoveCallback);
-            }
+            mAutoFocusMoveCallback = cb;
+            if (mCamera != null) installAutoFocusMoveCallback(mCamera);
         }
         return true;
     }
 
+    /** The quality gate always hears focus moves; the caller's callback, if any, runs after it. */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void installAutoFocusMoveCallback(Camera camera) {
+        CameraAutoFocusMoveCallback autoFocusMoveCallback = null;
+        if (mQualityGate != null || mAutoFocusMoveCallback != null) {
+            autoFocusMoveCallback = new CameraAutoFocusMoveCallback();
+            autoFocusMoveCallback.mDelegate = mAutoFocusMoveCallback;
+        }
+        camera.setAutoFocusMoveCallback(autoFocusMoveCallback);
+    }
+
     private CameraSource() {}
 
     private class PictureStartCallback implements Camera.ShutterCallback {
@@ -345,6 +474,7 @@ public class CameraSource {
     private class CameraAutoFocusMoveCallback implements Camera.AutoFocusMoveCallback {
         private AutoFocusMoveCallback mDelegate;
         @Override public void onAutoFocusMoving(boolean start, Camera camera) {
+            if (mQualityGate != null) mQualityGate.setFocusMoving(start);
             if (mDelegate != null) mDelegate.onAutoFocusMoving(start);
         }
     }
@@ -353,17 +483,17 @@ public class CameraSource {
     private Camera createCamera() {
         int requestedCameraId = getIdForRequestedCamera(mFacing);
         if (requestedCameraId == -1) throw new RuntimeException("Could not find requested camera.");
-        Camera camera = Camera.open(requestedCameraId);
+        Camera camera = mCameraProvider != null ? mCameraProvider.takeCamera(requestedCameraId) : null;
+        if (camera == null) camera = Camera.open(requestedCameraId);
 
         SizePair sizePair = selectSizePair(camera, mRequestedPreviewWidth, mRequestedPreviewHeight);
         if (sizePair == null) throw new RuntimeException("Could not find suitable preview size.");
         com.google.android.gms.common.images.Size pictureSize = sizePair.pictureSize();
         mPreviewSize = sizePair.previewSize();
 
-        int[] previewFpsRange = selectPreviewFpsRange(camera, mRequestedFps);
-        if (previewFpsRange == null) throw new RuntimeException("Could not find suitable preview fps range.");
-
         Camera.Parameters parameters = camera.getParameters();
+        int[] previewFpsRange = selectPreviewFpsRange(parameters, mRequestedFps);
+        if (previewFpsRange == null) throw new RuntimeException("Could not find suitable preview fps range.");
 
         if (pictureSize != null) {
             parameters.setPictureSize(pictureSize.getWidth(), pictureSize.getHeight());
@@ -388,17 +518,20 @@ public class CameraSource {
         mFlashMode = parameters.getFlashMode();
 
         camera.setParameters(parameters);
+        mControl.attach(camera, parameters);
+
+        if ((mQualityGate != null || mAutoFocusMoveCallback != null)
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            installAutoFocusMoveCallback(camera);
+        }
 
         camera.setPreviewCallbackWithBuffer(new CameraPreviewCallback());
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
+        mPreviewBuffers.attach(camera, getPreviewBufferSize(mPreviewSize));
 
         return camera;
     }
 
-    private static int getIdForRequestedCamera(int facing) {
+    static int getIdForRequestedCamera(int facing) {
         Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
         for (int i = 0; i < Camera.getNumberOfCameras(); ++i) {
             Camera.getCameraInfo(i, cameraInfo);
@@ -411,58 +544,37 @@ public class CameraSource {
         private final Size mPreview;
         private final Size mPicture;
 
-        public SizePair(Camera.Size previewSize, Camera.Size pictureSize) {
-            mPreview = new Size(previewSize.width, previewSize.height);
-            mPicture = (pictureSize != null) ? new Size(pictureSize.width, pictureSize.height) : null;
+        SizePair(int[] pairs, int offset) {
+            mPreview = new Size(pairs[offset], pairs[offset + 1]);
+            mPicture = pairs[offset + 2] > 0 ? new Size(pairs[offset + 2], pairs[offset + 3]) : null;
         }
 
         public Size previewSize() { return mPreview; }
         public Size pictureSize() { return mPicture; }
     }
 
-    private static List<SizePair> generateValidPreviewSizeList(Camera camera) {
-        Camera.Parameters parameters = camera.getParameters();
-        List<Camera.Size> supportedPreviewSizes = parameters.getSupportedPreviewSizes();
-        List<Camera.Size> supportedPictureSizes = parameters.getSupportedPictureSizes();
-        List<SizePair> validPreviewSizes = new ArrayList<>();
-        for (Camera.Size previewSize : supportedPreviewSizes) {
-            float previewAspectRatio = (float) previewSize.width / (float) previewSize.height;
-            for (Camera.Size pictureSize : supportedPictureSizes) {
-                float pictureAspectRatio = (float) pictureSize.width / (float) pictureSize.height;
-                if (Math.abs(previewAspectRatio - pictureAspectRatio) < ASPECT_RATIO_TOLERANCE) {
-                    validPreviewSizes.add(new SizePair(previewSize, pictureSize));
-                    break;
-                }
-            }
-        }
-        if (validPreviewSizes.size() == 0) {
-            for (Camera.Size previewSize : supportedPreviewSizes) {
-                validPreviewSizes.add(new SizePair(previewSize, null));
-            }
+    private static int[] flatten(List<Camera.Size> sizes) {
+        int[] flat = new int[sizes.size() * 2];
+        for (int i = 0; i < sizes.size(); i++) {
+            flat[2 * i] = sizes.get(i).width;
+            flat[2 * i + 1] = sizes.get(i).height;
         }
-        return validPreviewSizes;
+        return flat;
     }
 
     private static SizePair selectSizePair(Camera camera, int desiredWidth, int desiredHeight) {
-        List<SizePair> validPreviewSizes = generateValidPreviewSizeList(camera);
-        SizePair selectedPair = null;
-        int minDiff = Integer.MAX_VALUE;
-        for (SizePair sizePair : validPreviewSizes) {
-            Size size = sizePair.previewSize();
-            int diff = Math.abs(size.getWidth() - desiredWidth) + Math.abs(size.getHeight() - desiredHeight);
-            if (diff < minDiff) {
-                selectedPair = sizePair;
-                minDiff = diff;
-            }
-        }
-        return selectedPair;
+        Camera.Parameters parameters = camera.getParameters();
+        int[] pairs = PreviewSizes.generateValidPairs(
+                flatten(parameters.getSupportedPreviewSizes()), flatten(parameters.getSupportedPictureSizes()));
+        int selected = PreviewSizes.selectPair(pairs, desiredWidth, desiredHeight);
+        return selected >= 0 ? new SizePair(pairs, selected) : null;
     }
 
-    private int[] selectPreviewFpsRange(Camera camera, float desiredPreviewFps) {
+    private static int[] selectPreviewFpsRange(Camera.Parameters parameters, float desiredPreviewFps) {
         int desiredPreviewFpsScaled = (int) (desiredPreviewFps * 1000.0f);
         int[] selectedFpsRange = null;
         int minDiff = Integer.MAX_VALUE;
-        List<int[]> previewFpsRangeList = camera.getParameters().getSupportedPreviewFpsRange();
+        List<int[]> previewFpsRangeList = parameters.getSupportedPreviewFpsRange();
         for (int[] range : previewFpsRangeList) {
             int deltaMin = desiredPreviewFpsScaled - range[Camera.Parameters.PREVIEW_FPS_MIN_INDEX];
             int deltaMax = desiredPreviewFpsScaled - range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX];
@@ -475,8 +587,8 @@ public class CameraSource {
         return selectedFpsRange;
     }
 
-    private void setRotation(Camera camera, Camera.Parameters parameters, int cameraId) {
-        WindowManager windowManager = (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
+    static int getDisplayDegrees(Context context) {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         int degrees = 0;
         int rotation = windowManager.getDefaultDisplay().getRotation();
         switch (rotation) {
@@ -485,6 +597,11 @@ public class CameraSource {
             case Surface.ROTATION_180: degrees = 180; break;
             case Surface.ROTATION_270: degrees = 270; break;
         }
+        return degrees;
+    }
+
+    private void setRotation(Camera camera, Camera.Parameters parameters, int cameraId) {
+        int degrees = getDisplayDegrees(mContext);
 
         Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
         Camera.getCameraInfo(cameraId, cameraInfo);
@@ -505,106 +622,41 @@ public class CameraSource {
         parameters.setRotation(angle);
     }
 
-    private byte[] createPreviewBuffer(Size previewSize) {
+    private static int getPreviewBufferSize(Size previewSize) {
         int bitsPerPixel = ImageFormat.getBitsPerPixel(ImageFormat.NV21);
         long sizeInBits = (long) previewSize.getHeight() * previewSize.getWidth() * bitsPerPixel;
-        int bufferSize = (int) Math.ceil(sizeInBits / 8.0d) + 1;
-
-        byte[] byteArray = new byte[bufferSize];
-        ByteBuffer buffer = ByteBuffer.wrap(byteArray);
-        if (!buffer.hasArray() || (buffer.array() != byteArray)) {
-            throw new IllegalStateException("Failed to create valid buffer for camera source.");
-        }
+        return (int) Math.ceil(sizeInBits / 8.0d);
+    }
 
-        mBytesToByteBuffer.put(byteArray, buffer);
-        return byteArray;
+    /** Goes through the control thread too, so it cannot be overwritten by the cached parameters. */
+    private void updatePreviewFpsRange(final float fps) {
+        mControl.submit(null, parameters -> {
+            int[] previewFpsRange = selectPreviewFpsRange(parameters, fps);
+            if (previewFpsRange != null) {
+                parameters.setPreviewFpsRange(
+                        previewFpsRange[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
+                        previewFpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+            }
+            return null;
+        });
     }
 
     private class CameraPreviewCallback implements Camera.PreviewCallback {
         @Override public void onPreviewFrame(byte[] data, Camera camera) {
-            mFrameProcessor.setNextFrame(data, camera);
-        }
-    }
-
-    private class FrameProcessingRunnable implements Runnable {
-        private Detector<?> mDetector;
-        private final long mStartTimeMillis = SystemClock.elapsedRealtime();
-
-        private final Object mLock = new Object();
-        private boolean mActive = true;
-
-        private long mPendingTimeMillis;
-        private int mPendingFrameId = 0;
-        private ByteBuffer mPendingFrameData;
-
-        FrameProcessingRunnable(Detector<?> detector) { mDetector = detector; }
-
-        @SuppressLint("Assert")
-        void release() {
-            assert (mProcessingThread == null || mProcessingThread.getState() == State.TERMINATED);
-            if (mDetector != null) {
-                mDetector.release();
-                mDetector = null;
-            }
-        }
-
-        void setActive(boolean active) {
-            synchronized (mLock) {
-                mActive = active;
-                mLock.notifyAll();
-            }
-        }
-
-        void setNextFrame(byte[] data, Camera camera) {
-            synchronized (mLock) {
-                if (mPendingFrameData != null) {
-                    camera.addCallbackBuffer(mPendingFrameData.array());
-                    mPendingFrameData = null;
-                }
-
-                if (!mBytesToByteBuffer.containsKey(data)) {
+            if (mFrameGovernor != null) {
+                if (!mFrameGovernor.shouldProcess(SystemClock.elapsedRealtime())) {
+                    camera.addCallbackBuffer(data);
+                    mFrameProcessor.onFrameThrottled();
                     return;
                 }
-
-                mPendingTimeMillis = SystemClock.elapsedRealtime() - mStartTimeMillis;
-                mPendingFrameId++;
-                mPendingFrameData = mBytesToByteBuffer.get(data);
-
-                mLock.notifyAll();
+                float fps = mFrameGovernor.consumePreviewFpsChange();
+                if (fps > 0) updatePreviewFpsRange(fps);
             }
-        }
-
-        @Override
-        public void run() {
-            Frame outputFrame;
-            ByteBuffer data;
-
-            while (true) {
-                synchronized (mLock) {
-                    while (mActive && (mPendingFrameData == null)) {
-                        try { mLock.wait(); } catch (InterruptedException e) { return; }
-                    }
-
-                    if (!mActive) return;
-
-                    outputFrame = new Frame.Builder()
-                            .setImageData(mPendingFrameData, mPreviewSize.getWidth(),
-                                    mPreviewSize.getHeight(), ImageFormat.NV21)
-                            .setId(mPendingFrameId)
-                            .setTimestampMillis(mPendingTimeMillis)
-                            .setRotation(mRotation)
-                            .build();
-
-                    data = mPendingFrameData;
-                    mPendingFrameData = null;
-                }
-
-                try {
-                    mDetector.receiveFrame(outputFrame);
-                } catch (Throwable ignored) {
-                } finally {
-                    mCamera.addCallbackBuffer(data.array());
-                }
+            ByteBuffer buffer = mPreviewBuffers.acquire(data);
+            if (buffer != null) {
+                mFrameProcessor.setNextFrame(buffer);
+            } else {
+                mFrameProcessor.onFrameUnbuffered();
             }
         }
     }
@@ -22,7 +22,7 @@ public class CameraSourcePreview extends ViewGroup {
     private final SurfaceView mSurfaceView;
     private boolean mStartRequested;
     private boolean mSurfaceAvailable;
-    private CameraSource mCameraSource;
+    private FrameSource mCameraSource;
 
     private GraphicOverlay mOverlay;
 
@@ -38,7 +38,7 @@ public class CameraSourcePreview extends ViewGroup {
     }
 
     @RequiresPermission(Manifest.permission.CAMERA)
-    public void start(CameraSource cameraSource) throws IOException, SecurityException {
+    public void start(FrameSource cameraSource) throws IOException, SecurityException {
         if (cameraSource == null) {
             stop();
             return;
@@ -50,7 +50,7 @@ public class CameraSourcePreview extends ViewGroup {
     }
 
     @RequiresPermission(Manifest.permission.CAMERA)
-    public void start(CameraSource cameraSource, GraphicOverlay overlay) throws IOException, SecurityException {
+    public void start(FrameSource cameraSource, GraphicOverlay overlay) throws IOException, SecurityException {
         mOverlay = overlay;
         start(cameraSource);
     }
@@ -0,0 +1,52 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.hardware.Camera;
+import android.util.Log;
+
+/**
+ * Opens a legacy camera ahead of a scan session so {@link CameraSource} can take it over
+ * instead of paying for {@link Camera#open} on the critical path.
+ */
+@SuppressWarnings("deprecation")
+public class CameraWarmer implements CameraSource.CameraProvider {
+    private static final String TAG = "CameraWarmer";
+
+    private Camera mCamera;
+    private int mCameraId = -1;
+
+    /** Blocks while the camera opens; call off the main thread. */
+    public synchronized boolean open(int facing) {
+        int cameraId = CameraSource.getIdForRequestedCamera(facing);
+        if (cameraId == -1) return false;
+        if (mCamera != null && mCameraId == cameraId) return true;
+
+        release();
+        try {
+            mCamera = Camera.open(cameraId);
+            mCameraId = cameraId;
+            return true;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not pre-open camera " + cameraId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Camera takeCamera(int cameraId) {
+        if (mCamera == null || mCameraId != cameraId) return null;
+        Camera camera = mCamera;
+        mCamera = null;
+        mCameraId = -1;
+        return camera;
+    }
+
+    public synchronized boolean isOpen() { return mCamera != null; }
+
+    public synchronized void release() {
+        if (mCamera != null) {
+            mCamera.release();
+            mCamera = null;
+        }
+        mCameraId = -1;
+    }
+}
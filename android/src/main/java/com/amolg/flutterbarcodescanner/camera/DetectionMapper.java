@@ -0,0 +1,9 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Maps a detection made on a transformed frame (downsampled level, tile, crop) back into the
+ * coordinates of the frame it was derived from: {@code x' = x * scale + offsetX}.
+ */
+public interface DetectionMapper<T> {
+    void map(T item, float scale, int offsetX, int offsetY);
+}
@@ -0,0 +1,16 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Maps tile-local detections into the full frame and recognises the same item reported by
+ * two overlapping tiles.
+ */
+public interface DetectionMerger<T> extends DetectionMapper<T> {
+    /**
+     * Writes the item's left, top, right and bottom edges into {@code out} from {@code offset};
+     * returns false if the item has no position.
+     */
+    boolean getBounds(T item, int[] out, int offset);
+
+    /** Whether two items are the same detection when their bounds intersect or are unknown. */
+    boolean isSameDetection(T first, T second);
+}
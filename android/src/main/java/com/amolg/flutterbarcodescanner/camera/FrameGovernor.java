@@ -0,0 +1,80 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Paces preview frames to what the detector can sustain, based on an EWMA of the
+ * per-frame detection latency and the number of workers decoding in parallel.
+ */
+public class FrameGovernor {
+    private static final float LATENCY_ALPHA = 0.2f;
+    private static final float HEADROOM = 1.1f;
+    private static final float FPS_CHANGE_THRESHOLD = 0.2f;
+    private static final long FPS_CHANGE_INTERVAL_MILLIS = 3000;
+    private static final float MIN_PREVIEW_FPS = 5.0f;
+
+    private final int mWorkerCount;
+    private final float mMaxFps;
+
+    private volatile float mLatencyMillis;
+    private long mLastAcceptedMillis = Long.MIN_VALUE;
+    private long mLastFpsChangeMillis;
+    private float mPreviewFps;
+    private volatile float mPendingPreviewFps;
+
+    private volatile long mFramesAccepted;
+    private volatile long mFramesSkipped;
+
+    public FrameGovernor(int workerCount, float maxFps) {
+        if (workerCount <= 0) throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+        if (maxFps <= 0) throw new IllegalArgumentException("Invalid fps: " + maxFps);
+        mWorkerCount = workerCount;
+        mMaxFps = maxFps;
+        mPreviewFps = maxFps;
+    }
+
+    /** Called from the camera callback thread for every preview frame. */
+    public boolean shouldProcess(long nowMillis) {
+        float latency = mLatencyMillis;
+        long minInterval = (long) (latency * HEADROOM / mWorkerCount);
+        if (mLastAcceptedMillis != Long.MIN_VALUE && nowMillis - mLastAcceptedMillis < minInterval) {
+            mFramesSkipped++;
+            return false;
+        }
+        mLastAcceptedMillis = nowMillis;
+        mFramesAccepted++;
+
+        float sustainableFps = getSustainableFps();
+        if (nowMillis - mLastFpsChangeMillis >= FPS_CHANGE_INTERVAL_MILLIS
+                && Math.abs(sustainableFps - mPreviewFps) > mPreviewFps * FPS_CHANGE_THRESHOLD) {
+            mLastFpsChangeMillis = nowMillis;
+            mPreviewFps = sustainableFps;
+            mPendingPreviewFps = sustainableFps;
+        }
+        return true;
+    }
+
+    /** Called from the worker threads once detection of a frame has finished. */
+    public synchronized void onFrameProcessed(long latencyNanos) {
+        float latency = latencyNanos / 1000000f;
+        mLatencyMillis = (mLatencyMillis == 0f)
+                ? latency
+                : mLatencyMillis + LATENCY_ALPHA * (latency - mLatencyMillis);
+    }
+
+    /** Returns the preview fps the camera should be reprogrammed to, or 0 if unchanged. */
+    public float consumePreviewFpsChange() {
+        float fps = mPendingPreviewFps;
+        if (fps > 0) mPendingPreviewFps = 0;
+        return fps;
+    }
+
+    public float getSustainableFps() {
+        float latency = mLatencyMillis;
+        if (latency <= 0f) return mMaxFps;
+        float fps = mWorkerCount * 1000f / (latency * HEADROOM);
+        return Math.max(MIN_PREVIEW_FPS, Math.min(mMaxFps, fps));
+    }
+
+    public float getLatencyMillis() { return mLatencyMillis; }
+    public long getFramesAccepted() { return mFramesAccepted; }
+    public long getFramesSkipped() { return mFramesSkipped; }
+}
@@ -0,0 +1,328 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.annotation.SuppressLint;
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Backend-independent frame pipeline: takes NV21 buffers from a frame source, runs detection
+ * on a pool of workers and hands results to the processor in frame order.
+ */
+class FrameProcessor<T> implements Runnable {
+    interface BufferReleaser { void release(ByteBuffer buffer); }
+
+    private Detector<T> mDetector;
+    private Detector.Processor<T> mProcessor;
+    private boolean mDetectorShared;
+    private Runnable mFirstFrameListener;
+    private boolean mFirstFrameSeen;
+    private final long mStartTimeMillis = SystemClock.elapsedRealtime();
+
+    private int mThreadCount = 1;
+    private Thread[] mThreads;
+    private ScanRegion mScanRegion;
+    private FrameGovernor mFrameGovernor;
+    private DetectionMapper<T> mPyramidMapper;
+    private TiledDecoder<T> mTiledDecoder;
+    private FrameQualityGate mQualityGate;
+    private SceneChangeDetector mSceneChangeDetector;
+    private FrameRecorder mFrameRecorder;
+    private ScanMetrics mMetrics = ScanMetrics.getDefault();
+
+    private volatile BufferReleaser mBufferReleaser;
+    private volatile int mFrameWidth;
+    private volatile int mFrameHeight;
+    private volatile int mRotation;
+    private volatile int mFacing;
+
+    private final Object mLock = new Object();
+    private volatile boolean mActive = true;
+
+    private long mPendingTimeMillis;
+    private long mPendingArrivalNanos;
+    private int mPendingFrameId = 0;
+    private ByteBuffer mPendingFrameData;
+
+    private final Object mDeliveryLock = new Object();
+    private long mNextDispatch;
+    private long mNextDelivery;
+
+    /** A null processor keeps the single-threaded {@link Detector#receiveFrame} path. */
+    FrameProcessor(Detector<T> detector, @Nullable Detector.Processor<T> processor) {
+        mDetector = detector;
+        mProcessor = processor;
+    }
+
+    void setThreadCount(int count) { mThreadCount = mProcessor != null ? count : 1; }
+    int getThreadCount() { return mThreadCount; }
+
+    void setDetectorShared(boolean shared) { mDetectorShared = shared; }
+    void setFirstFrameListener(@Nullable Runnable listener) { mFirstFrameListener = listener; }
+    void setScanRegion(@Nullable ScanRegion region) { mScanRegion = region; }
+    void setFrameGovernor(@Nullable FrameGovernor governor) { mFrameGovernor = governor; }
+    void setQualityGate(@Nullable FrameQualityGate gate) { mQualityGate = gate; }
+    void setSceneChangeDetector(@Nullable SceneChangeDetector detector) { mSceneChangeDetector = detector; }
+    void setFrameRecorder(@Nullable FrameRecorder recorder) { mFrameRecorder = recorder; }
+    void setMetrics(ScanMetrics metrics) { mMetrics = metrics; }
+    ScanMetrics getMetrics() { return mMetrics; }
+
+    /** Enables coarse-to-fine decoding; the mapper scales coarse-level results back up. */
+    @SuppressWarnings("unchecked")
+    void setPyramidMapper(@Nullable DetectionMapper<?> mapper) { mPyramidMapper = (DetectionMapper<T>) mapper; }
+
+    /** Decodes every frame as overlapping tiles instead of a single full-frame pass. */
+    @SuppressWarnings("unchecked")
+    void setTiledDecoder(@Nullable TiledDecoder<?> decoder) { mTiledDecoder = (TiledDecoder<T>) decoder; }
+
+    void start(BufferReleaser releaser, int width, int height, int rotation, int facing) {
+        mBufferReleaser = releaser;
+        mFrameWidth = width;
+        mFrameHeight = height;
+        mRotation = rotation;
+        mFacing = facing;
+        if (mSceneChangeDetector != null) mSceneChangeDetector.reset();
+        synchronized (mLock) { mFirstFrameSeen = false; }
+
+        setActive(true);
+        mThreads = new Thread[mThreadCount];
+        for (int i = 0; i < mThreads.length; i++) {
+            mThreads[i] = new Thread(this, "FrameProcessor-" + i);
+            mThreads[i].start();
+        }
+    }
+
+    void stop() {
+        setActive(false);
+        if (mThreads != null) {
+            for (Thread thread : mThreads) {
+                try { thread.join(); } catch (InterruptedException ignored) {}
+            }
+            mThreads = null;
+        }
+    }
+
+    @SuppressLint("Assert")
+    void release() {
+        assert (mThreads == null);
+        if (mDetector != null) {
+            if (!mDetectorShared) mDetector.release();
+            mDetector = null;
+        }
+        if (mProcessor != null) {
+            mProcessor.release();
+            mProcessor = null;
+        }
+        if (mTiledDecoder != null) {
+            mTiledDecoder.release();
+            mTiledDecoder = null;
+        }
+    }
+
+    private void setActive(boolean active) {
+        synchronized (mLock) {
+            mActive = active;
+            if (!active) mPendingFrameData = null;
+            mLock.notifyAll();
+        }
+        synchronized (mDeliveryLock) {
+            if (active) mNextDelivery = mNextDispatch;
+            mDeliveryLock.notifyAll();
+        }
+    }
+
+    /** Counts a frame the source held back for the frame governor instead of queueing it. */
+    void onFrameThrottled() {
+        mMetrics.onFrameReceived();
+        mMetrics.onFrameThrottled();
+    }
+
+    /** Counts a frame the source could not queue because no buffer was free. */
+    void onFrameUnbuffered() {
+        mMetrics.onFrameReceived();
+        mMetrics.onFrameDropped();
+    }
+
+    /** Queues the latest frame, returning any frame that no worker picked up in time. */
+    void setNextFrame(ByteBuffer data) {
+        long arrivalNanos = System.nanoTime();
+        mMetrics.onFrameReceived();
+        if (mFrameRecorder != null) {
+            mFrameRecorder.record(data, mFrameWidth, mFrameHeight, mRotation, arrivalNanos);
+        }
+        synchronized (mLock) {
+            if (mPendingFrameData != null) {
+                mBufferReleaser.release(mPendingFrameData);
+                mPendingFrameData = null;
+                mMetrics.onFrameDropped();
+            }
+
+            mPendingTimeMillis = SystemClock.elapsedRealtime() - mStartTimeMillis;
+            mPendingArrivalNanos = arrivalNanos;
+            mPendingFrameId++;
+            mPendingFrameData = data;
+
+            mLock.notifyAll();
+            if (!mFirstFrameSeen) {
+                mFirstFrameSeen = true;
+                if (mFirstFrameListener != null) mFirstFrameListener.run();
+            }
+        }
+    }
+
+    private ByteBuffer cropToScanRegion(ByteBuffer data, int width, int height, int[] crop,
+                                        @Nullable ByteBuffer reuse) {
+        int size = ScanRegion.getNv21Size(crop[2], crop[3]);
+        ByteBuffer buffer = (reuse != null && reuse.capacity() >= size) ? reuse : ByteBuffer.allocate(size);
+        ScanRegion.cropNv21(data.array(), width, height, crop, buffer.array());
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    @Nullable
+    private SparseArray<T> detect(Frame frame) {
+        if (mProcessor == null) {
+            mDetector.receiveFrame(frame);
+            return null;
+        }
+        return mDetector.detect(frame);
+    }
+
+    @Nullable
+    private SparseArray<T> detectCoarse(LumaPyramid pyramid, ByteBuffer data, int width, int height,
+                                        int frameId, long timeMillis) {
+        ByteBuffer level = pyramid.downsample(data, width, height);
+        Frame coarseFrame = new Frame.Builder()
+                .setImageData(level, pyramid.getWidth(), pyramid.getHeight(), ImageFormat.NV21)
+                .setId(frameId)
+                .setTimestampMillis(timeMillis)
+                .setRotation(mRotation)
+                .build();
+
+        SparseArray<T> items = mDetector.detect(coarseFrame);
+        if (items == null || items.size() == 0) return null;
+
+        float scale = (float) width / pyramid.getWidth();
+        for (int i = 0; i < items.size(); i++) {
+            mPyramidMapper.map(items.valueAt(i), scale, 0, 0);
+        }
+        return items;
+    }
+
+    private void deliverInOrder(long sequence, @Nullable Frame frame, @Nullable SparseArray<T> items,
+                                long arrivalNanos) {
+        synchronized (mDeliveryLock) {
+            while (sequence != mNextDelivery) {
+                if (!mActive) return;
+                try { mDeliveryLock.wait(); } catch (InterruptedException e) { return; }
+            }
+            try {
+                if (frame != null && items != null && mProcessor != null) {
+                    long dispatchStartNanos = System.nanoTime();
+                    mProcessor.receiveDetections(
+                            new Detector.Detections<>(items, frame.getMetadata(), mDetector.isOperational()));
+                    long endNanos = System.nanoTime();
+                    mMetrics.getDispatch().record(endNanos - dispatchStartNanos);
+                    mMetrics.getScan().record(endNanos - arrivalNanos);
+                }
+            } catch (Throwable ignored) {
+            } finally {
+                mNextDelivery++;
+                mDeliveryLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        final int[] crop = new int[4];
+        ByteBuffer cropBuffer = null;
+        final TiledDecoder<T> tiledDecoder = mProcessor != null ? mTiledDecoder : null;
+        final LumaPyramid pyramid = (mPyramidMapper != null && mProcessor != null && tiledDecoder == null)
+                ? new LumaPyramid() : null;
+        final int[] signature = mSceneChangeDetector != null ? new int[SceneChangeDetector.SIGNATURE_SIZE] : null;
+        Frame outputFrame;
+        ByteBuffer data;
+        int frameId;
+        long timeMillis;
+        long arrivalNanos;
+        long sequence;
+
+        while (true) {
+            synchronized (mLock) {
+                while (mActive && (mPendingFrameData == null)) {
+                    try { mLock.wait(); } catch (InterruptedException e) { return; }
+                }
+
+                if (!mActive) return;
+
+                data = mPendingFrameData;
+                frameId = mPendingFrameId;
+                timeMillis = mPendingTimeMillis;
+                arrivalNanos = mPendingArrivalNanos;
+                sequence = mNextDispatch++;
+                mPendingFrameData = null;
+            }
+            long buildStartNanos = System.nanoTime();
+            mMetrics.getBufferWait().record(buildStartNanos - arrivalNanos);
+
+            int width = mFrameWidth;
+            int height = mFrameHeight;
+            boolean cropped = mScanRegion != null
+                    && mScanRegion.computeCrop(width, height, mRotation, mFacing == CameraSource.CAMERA_FACING_FRONT, crop);
+            if (cropped) {
+                cropBuffer = cropToScanRegion(data, width, height, crop, cropBuffer);
+                mBufferReleaser.release(data);
+                data = cropBuffer;
+                width = crop[2];
+                height = crop[3];
+            }
+
+            if ((mSceneChangeDetector != null && mSceneChangeDetector.isStatic(data.array(), width, height, signature))
+                    || (mQualityGate != null
+                    && mQualityGate.evaluate(data.array(), width, height) != FrameQualityGate.ACCEPTED)) {
+                if (!cropped) mBufferReleaser.release(data);
+                mMetrics.onFrameSkipped();
+                deliverInOrder(sequence, null, null, arrivalNanos);
+                continue;
+            }
+
+            outputFrame = new Frame.Builder()
+                    .setImageData(data, width, height, ImageFormat.NV21)
+                    .setId(frameId)
+                    .setTimestampMillis(timeMillis)
+                    .setRotation(mRotation)
+                    .build();
+
+            SparseArray<T> items = null;
+            long detectStartNanos = System.nanoTime();
+            mMetrics.getFrameBuild().record(detectStartNanos - buildStartNanos);
+            try {
+                if (tiledDecoder != null) {
+                    items = tiledDecoder.decode(data, width, height, frameId, timeMillis, mRotation);
+                } else if (pyramid != null && LumaPyramid.canDownsample(width, height)) {
+                    items = detectCoarse(pyramid, data, width, height, frameId, timeMillis);
+                }
+                if (items == null) items = detect(outputFrame);
+            } catch (Throwable ignored) {
+            } finally {
+                if (!cropped) mBufferReleaser.release(data);
+            }
+            long detectNanos = System.nanoTime() - detectStartNanos;
+            mMetrics.getDetect().record(detectNanos);
+            if (mFrameGovernor != null) mFrameGovernor.onFrameProcessed(detectNanos);
+            if (mSceneChangeDetector != null && items != null && items.size() > 0) {
+                mSceneChangeDetector.onDecoded(signature);
+            }
+            deliverInOrder(sequence, outputFrame, items, arrivalNanos);
+        }
+    }
+}
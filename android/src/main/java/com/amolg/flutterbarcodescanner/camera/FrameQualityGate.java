@@ -0,0 +1,119 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cheap pre-filter that rejects frames with no chance of decoding: lens still moving, too
+ * blurry (Laplacian variance on a subsampled luma grid) or badly exposed (mean / clipped pixels).
+ */
+public class FrameQualityGate {
+    public static final int ACCEPTED = 0;
+    public static final int REJECTED_FOCUS_MOVING = 1;
+    public static final int REJECTED_BLUR = 2;
+    public static final int REJECTED_TOO_DARK = 3;
+    public static final int REJECTED_TOO_BRIGHT = 4;
+    public static final int REJECTED_CLIPPED = 5;
+    private static final int RESULT_COUNT = 6;
+
+    private static final int CLIP_LOW = 5;
+    private static final int CLIP_HIGH = 250;
+    private static final long MAX_FOCUS_PAUSE_MILLIS = 1000;
+
+    private volatile int mGridStep = 8;
+    private volatile float mMinSharpness = 15f;
+    private volatile int mMinMean = 20;
+    private volatile int mMaxMean = 235;
+    private volatile float mMaxClippedFraction = 0.5f;
+
+    private volatile boolean mFocusMoving;
+    private volatile long mFocusMovingSinceMillis;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(RESULT_COUNT);
+
+    public FrameQualityGate setGridStep(int step) {
+        if (step < 2) throw new IllegalArgumentException("Invalid grid step: " + step);
+        mGridStep = step;
+        return this;
+    }
+
+    public FrameQualityGate setMinSharpness(float minSharpness) {
+        mMinSharpness = minSharpness;
+        return this;
+    }
+
+    public FrameQualityGate setExposureRange(int minMean, int maxMean) {
+        if (minMean < 0 || maxMean > 255 || minMean >= maxMean) {
+            throw new IllegalArgumentException("Invalid exposure range: " + minMean + "-" + maxMean);
+        }
+        mMinMean = minMean;
+        mMaxMean = maxMean;
+        return this;
+    }
+
+    public FrameQualityGate setMaxClippedFraction(float fraction) {
+        if (fraction <= 0 || fraction > 1) throw new IllegalArgumentException("Invalid clipped fraction: " + fraction);
+        mMaxClippedFraction = fraction;
+        return this;
+    }
+
+    public float getMinSharpness() { return mMinSharpness; }
+    public int getMinMean() { return mMinMean; }
+    public int getMaxMean() { return mMaxMean; }
+    public float getMaxClippedFraction() { return mMaxClippedFraction; }
+
+    /** Fed from the camera's auto-focus move notifications. */
+    public void setFocusMoving(boolean moving) {
+        if (moving && !mFocusMoving) mFocusMovingSinceMillis = SystemClock.elapsedRealtime();
+        mFocusMoving = moving;
+    }
+
+    public long getCount(int result) { return mCounts.get(result); }
+
+    /** Evaluates the luma plane of a frame and returns ACCEPTED or the rejection reason. */
+    public int evaluate(byte[] luma, int width, int height) {
+        int result = classify(luma, width, height);
+        mCounts.incrementAndGet(result);
+        return result;
+    }
+
+    private int classify(byte[] luma, int width, int height) {
+        if (mFocusMoving && SystemClock.elapsedRealtime() - mFocusMovingSinceMillis < MAX_FOCUS_PAUSE_MILLIS) {
+            return REJECTED_FOCUS_MOVING;
+        }
+
+        final int step = mGridStep;
+        long sum = 0;
+        long lapSum = 0;
+        long lapSquareSum = 0;
+        int clipped = 0;
+        int samples = 0;
+
+        for (int y = step; y < height - 1; y += step) {
+            int row = y * width;
+            for (int x = step; x < width - 1; x += step) {
+                int center = luma[row + x] & 0xff;
+                int laplacian = 4 * center
+                        - (luma[row + x - 1] & 0xff) - (luma[row + x + 1] & 0xff)
+                        - (luma[row - width + x] & 0xff) - (luma[row + width + x] & 0xff);
+                sum += center;
+                lapSum += laplacian;
+                lapSquareSum += laplacian * laplacian;
+                if (center <= CLIP_LOW || center >= CLIP_HIGH) clipped++;
+                samples++;
+            }
+        }
+        if (samples == 0) return ACCEPTED;
+
+        int mean = (int) (sum / samples);
+        if (mean < mMinMean) return REJECTED_TOO_DARK;
+        if (mean > mMaxMean) return REJECTED_TOO_BRIGHT;
+        if (clipped > samples * mMaxClippedFraction) return REJECTED_CLIPPED;
+
+        float lapMean = (float) lapSum / samples;
+        float variance = (float) lapSquareSum / samples - lapMean * lapMean;
+        if (variance < mMinSharpness) return REJECTED_BLUR;
+        return ACCEPTED;
+    }
+}
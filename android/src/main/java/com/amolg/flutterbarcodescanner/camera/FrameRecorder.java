@@ -0,0 +1,113 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends raw NV21 preview frames with their size, rotation and timestamp to a file that
+ * {@link ReplayFrameSource} can play back. Frames are copied into a small pool of buffers and
+ * written on a background thread; when the disk cannot keep up, frames are dropped rather than
+ * stalling the camera.
+ *
+ * <p>Layout: a file header {@code int MAGIC, int VERSION} followed by records of
+ * {@code int width, int height, int rotation, long timestampNanos, int length, byte[length]},
+ * all big-endian.
+ */
+public class FrameRecorder implements Closeable {
+    private static final String TAG = "FrameRecorder";
+
+    static final int MAGIC = 0x4E563231; // "NV21"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 24;
+    private static final int POOL_SIZE = 4;
+
+    private final FileOutputStream mOutput;
+    private final FileChannel mChannel;
+    private final ArrayBlockingQueue<ByteBuffer> mFree = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final ArrayBlockingQueue<ByteBuffer> mPending = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Thread mWriter;
+    private int mAllocated;
+    private volatile boolean mClosed;
+
+    private final AtomicLong mRecordedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    public FrameRecorder(File file) throws IOException {
+        mOutput = new FileOutputStream(file, true);
+        mChannel = mOutput.getChannel();
+        if (mChannel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) mChannel.write(header);
+        }
+        mWriter = new Thread(this::writeLoop, TAG);
+        mWriter.start();
+    }
+
+    /** Copies a frame for writing; never blocks. */
+    public void record(ByteBuffer data, int width, int height, int rotation, long timestampNanos) {
+        if (mClosed) return;
+        int length = ScanRegion.getNv21Size(width, height);
+        ByteBuffer record = obtain(RECORD_HEADER_SIZE + length);
+        if (record == null) {
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+        record.putInt(width).putInt(height).putInt(rotation).putLong(timestampNanos).putInt(length);
+        record.put(data.array(), 0, length);
+        record.flip();
+        mPending.offer(record);
+    }
+
+    private synchronized ByteBuffer obtain(int size) {
+        ByteBuffer buffer = mFree.poll();
+        if (buffer == null && mAllocated < POOL_SIZE) {
+            mAllocated++;
+            buffer = ByteBuffer.allocate(size);
+        }
+        if (buffer != null && buffer.capacity() < size) buffer = ByteBuffer.allocate(size);
+        if (buffer != null) buffer.clear();
+        return buffer;
+    }
+
+    private void writeLoop() {
+        try {
+            while (!mClosed || !mPending.isEmpty()) {
+                ByteBuffer record = mPending.poll(100, TimeUnit.MILLISECONDS);
+                if (record == null) continue;
+                while (record.hasRemaining()) mChannel.write(record);
+                mRecordedCount.incrementAndGet();
+                mFree.offer(record);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Frame recording stopped", e);
+            mClosed = true;
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    public long getRecordedCount() { return mRecordedCount.get(); }
+    public long getDroppedCount() { return mDroppedCount.get(); }
+
+    /** Writes out the frames already queued and closes the file. */
+    @Override
+    public void close() throws IOException {
+        mClosed = true;
+        try {
+            mWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mOutput.close();
+    }
+}
@@ -0,0 +1,48 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.Manifest;
+import android.graphics.SurfaceTexture;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.RequiresPermission;
+
+import com.google.android.gms.common.images.Size;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+/**
+ * Camera backend feeding preview frames to a detector, implemented on top of the legacy
+ * Camera API by {@link CameraSource} and on Camera2 by {@link Camera2Source}.
+ */
+public interface FrameSource {
+    @RequiresPermission(Manifest.permission.CAMERA)
+    FrameSource start(SurfaceHolder surfaceHolder) throws IOException;
+
+    /** Renders the preview into a texture, e.g. one registered with Flutter's TextureRegistry. */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    FrameSource start(SurfaceTexture surfaceTexture) throws IOException;
+
+    void stop();
+
+    void release();
+
+    Size getPreviewSize();
+
+    int getCameraFacing();
+
+    /** Quarter turns that bring a preview frame upright, as passed to the detector. */
+    int getRotation();
+
+    /**
+     * Zooms relative to the current level. Completes with the zoom ratio applied in hundredths,
+     * e.g. 150 for 1.5x, the same unit for every backend, or 0 if the camera cannot zoom.
+     */
+    Future<Integer> doZoom(float scale);
+
+    /** Whether the preview focuses continuously rather than at a fixed or triggered focus. */
+    boolean isContinuousFocus();
+
+    /** Turns the torch on or off; completes with whether the camera has one and applied it. */
+    Future<Boolean> setTorch(boolean on);
+}
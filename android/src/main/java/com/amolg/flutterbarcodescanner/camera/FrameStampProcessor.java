@@ -0,0 +1,46 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+/**
+ * Passes detections through to another processor while remembering which frame they came
+ * from, so trackers invoked during delivery can stamp their results with it.
+ */
+public class FrameStampProcessor<T> implements Detector.Processor<T> {
+    private final Detector.Processor<T> mDelegate;
+    private volatile int mFrameId;
+    private volatile long mTimestampMillis;
+    private DeliveryListener<T> mDeliveryListener;
+
+    public interface DeliveryListener<T> {
+        /** Runs on the delivering thread after the frame's detections reached the delegate. */
+        void onDelivered(Detector.Detections<T> detections);
+    }
+
+    public FrameStampProcessor(Detector.Processor<T> delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void receiveDetections(Detector.Detections<T> detections) {
+        Frame.Metadata metadata = detections.getFrameMetadata();
+        if (metadata != null) {
+            mFrameId = metadata.getId();
+            mTimestampMillis = metadata.getTimestampMillis();
+        }
+        mDelegate.receiveDetections(detections);
+        if (mDeliveryListener != null) mDeliveryListener.onDelivered(detections);
+    }
+
+    public void setDeliveryListener(DeliveryListener<T> listener) { mDeliveryListener = listener; }
+
+    @Override
+    public void release() { mDelegate.release(); }
+
+    /** Id of the frame whose detections are being (or were last) delivered. */
+    public int getFrameId() { return mFrameId; }
+
+    /** Timestamp of that frame, in milliseconds since the frame source was created. */
+    public long getTimestampMillis() { return mTimestampMillis; }
+}
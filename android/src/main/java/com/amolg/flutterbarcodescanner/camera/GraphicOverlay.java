@@ -1,34 +1,63 @@
 package com.amolg.flutterbarcodescanner.camera;
 
+import android.animation.ValueAnimator;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.animation.LinearInterpolator;
+
+import androidx.annotation.Nullable;
 
 import com.amolg.flutterbarcodescanner.BarcodeCaptureActivity;
 import com.amolg.flutterbarcodescanner.FlutterBarcodeScannerPlugin;
 import com.amolg.flutterbarcodescanner.constants.AppConstants;
 import com.amolg.flutterbarcodescanner.utils.AppUtil;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Draws the scan window, its laser line and the tracked graphics over the camera preview. Paints
+ * and geometry are created up front and in {@link #onSizeChanged}, so drawing does not allocate;
+ * the laser is animated at a capped frame rate between {@link #startLaser()} and
+ * {@link #stopLaser()}. Graphics live in a copy-on-write array that detector threads replace
+ * atomically, so drawing reads a snapshot without locking, and hit-testing uses a spatial index
+ * rebuilt on the detector thread after each frame.
+ */
 public class GraphicOverlay<T extends GraphicOverlay.Graphic> extends View {
-    private final Object mLock = new Object();
-    private float mWidthScaleFactor = 1.0f, mHeightScaleFactor = 1.0f;
+    private static final int LASER_MAX_FPS = 30;
+    private static final long LASER_FRAME_INTERVAL_MILLIS = 1000 / LASER_MAX_FPS;
+    // BARCODE_FRAMES was the laser step per redraw at the display's 60 Hz.
+    private static final int LEGACY_FRAMES_PER_SECOND = 60;
+
+    private static final Graphic[] NO_GRAPHICS = new Graphic[0];
 
-    private int mFacing = CameraSource.CAMERA_FACING_BACK;
-    private final Set<T> mGraphics = new HashSet<>();
+    private final OverlayTransform mTransform = new OverlayTransform();
+    private final AtomicReference<Graphic[]> mGraphics = new AtomicReference<>(NO_GRAPHICS);
+    private volatile SpatialIndex<T> mIndex;
+    private ScanRegion mScanRegion;
 
-    private float left, top, endY;
-    private int rectWidth, rectHeight, frames, lineColor, lineWidth;
-    private boolean revAnimation;
+    private final int mRectWidthPx, mRectHeightPx;
+    private final int mLaserStepPx;
+    private final Paint mEraserPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mLaserPaint = new Paint();
+    private final RectF mScanRect = new RectF();
+    private final Paint mSelectionPaint = new Paint();
+    private final RectF mSelection = new RectF();
+    private boolean mSelecting;
+    private float mLaserY;
+    private long mLastLaserFrameMillis;
+    private boolean mLaserRequested;
+    private ValueAnimator mLaserAnimator;
 
     public static abstract class Graphic {
         private final GraphicOverlay mOverlay;
@@ -37,100 +66,220 @@ public class GraphicOverlay<T extends GraphicOverlay.Graphic> extends View {
 
         public abstract void draw(Canvas canvas);
 
-        public float scaleX(float horizontal) { return horizontal * mOverlay.mWidthScaleFactor; }
-        public float scaleY(float vertical) { return vertical * mOverlay.mHeightScaleFactor; }
+        /** Sets {@code out} to the box drawn in overlay coordinates; false if there is nothing to hit. */
+        public boolean getBounds(RectF out) { return false; }
 
-        public float translateX(float x) {
-            if (mOverlay.mFacing == CameraSource.CAMERA_FACING_FRONT) {
-                return mOverlay.getWidth() - scaleX(x);
-            } else {
-                return scaleX(x);
-            }
-        }
+        public float scaleX(float horizontal) { return mOverlay.mTransform.scaleX(horizontal); }
+        public float scaleY(float vertical) { return mOverlay.mTransform.scaleY(vertical); }
 
-        public float translateY(float y) { return scaleY(y); }
+        public float translateX(float x) { return mOverlay.mTransform.translateX(x + mOverlay.getScanOffsetX()); }
+        public float translateY(float y) { return mOverlay.mTransform.translateY(y + mOverlay.getScanOffsetY()); }
 
-        public void postInvalidate() { mOverlay.postInvalidate(); }
+        public void postInvalidate() { mOverlay.postInvalidateOnAnimation(); }
     }
 
     public GraphicOverlay(android.content.Context context, AttributeSet attrs) {
         super(context, attrs);
 
-        rectWidth = AppConstants.BARCODE_RECT_WIDTH;
-        rectHeight = BarcodeCaptureActivity.SCAN_MODE == BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal()
+        int rectHeight = BarcodeCaptureActivity.SCAN_MODE == BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal()
                 ? AppConstants.BARCODE_RECT_HEIGHT
                 : (int) (AppConstants.BARCODE_RECT_HEIGHT / 1.5);
+        mRectWidthPx = AppUtil.dpToPx(context, AppConstants.BARCODE_RECT_WIDTH);
+        mRectHeightPx = AppUtil.dpToPx(context, rectHeight);
+        mLaserStepPx = AppConstants.BARCODE_FRAMES;
 
-        lineColor = Color.parseColor(FlutterBarcodeScannerPlugin.lineColor);
-        lineWidth = AppConstants.BARCODE_LINE_WIDTH;
-        frames = AppConstants.BARCODE_FRAMES;
+        mEraserPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        mLaserPaint.setColor(Color.parseColor(FlutterBarcodeScannerPlugin.lineColor));
+        mLaserPaint.setStrokeWidth((float) AppConstants.BARCODE_LINE_WIDTH);
+        mSelectionPaint.setStyle(Paint.Style.STROKE);
+        mSelectionPaint.setColor(Color.WHITE);
+        mSelectionPaint.setStrokeWidth(2.0f);
     }
 
     public void clear() {
-        synchronized (mLock) { mGraphics.clear(); }
-        postInvalidate();
+        mGraphics.set(NO_GRAPHICS);
+        mIndex = null;
+        postInvalidateOnAnimation();
     }
 
+    /** Adds a graphic unless already present; invalidations are coalesced to the next frame. */
     public void add(T graphic) {
-        synchronized (mLock) { mGraphics.add(graphic); }
-        postInvalidate();
+        Graphic[] current, updated;
+        do {
+            current = mGraphics.get();
+            if (indexOf(current, graphic) >= 0) break;
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = graphic;
+        } while (!mGraphics.compareAndSet(current, updated));
+        postInvalidateOnAnimation();
+    }
+
+    public void remove(T graphic) {
+        Graphic[] current, updated;
+        do {
+            current = mGraphics.get();
+            int index = indexOf(current, graphic);
+            if (index < 0) return;
+            if (current.length == 1) {
+                updated = NO_GRAPHICS;
+            } else {
+                updated = new Graphic[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            }
+        } while (!mGraphics.compareAndSet(current, updated));
+        postInvalidateOnAnimation();
+    }
+
+    private static int indexOf(Graphic[] graphics, Graphic graphic) {
+        for (int i = 0; i < graphics.length; i++) {
+            if (graphics[i] == graphic) return i;
+        }
+        return -1;
+    }
+
+    /** Indexes the current graphics by their drawn boxes; called on the detector thread after each frame. */
+    @SuppressWarnings("unchecked")
+    public void rebuildIndex() {
+        Graphic[] graphics = mGraphics.get();
+        List<T> items = new ArrayList<>(graphics.length);
+        float[] boxes = new float[graphics.length * 4];
+        RectF bounds = new RectF();
+        for (Graphic graphic : graphics) {
+            if (!graphic.getBounds(bounds)) continue;
+            int offset = items.size() * 4;
+            boxes[offset] = bounds.left;
+            boxes[offset + 1] = bounds.top;
+            boxes[offset + 2] = bounds.right;
+            boxes[offset + 3] = bounds.bottom;
+            items.add((T) graphic);
+        }
+        mIndex = new SpatialIndex<>(items, boxes, items.size());
+    }
+
+    /** The innermost graphic under the point, else the closest one, in overlay coordinates. */
+    @Nullable
+    public T findGraphicAt(float x, float y) {
+        SpatialIndex<T> index = mIndex;
+        if (index == null) return null;
+        T hit = index.findAt(x, y);
+        return hit != null ? hit : index.findNearest(x, y, Float.MAX_VALUE);
+    }
+
+    /** Graphics whose boxes lie entirely inside the rectangle, in overlay coordinates. */
+    public List<T> findGraphicsIn(RectF rect) {
+        List<T> graphics = new ArrayList<>();
+        SpatialIndex<T> index = mIndex;
+        if (index != null) index.findContained(rect.left, rect.top, rect.right, rect.bottom, graphics);
+        return graphics;
+    }
+
+    /** Shows the rectangle being dragged out to select codes, or hides it when null. */
+    public void setSelectionRect(@Nullable RectF rect) {
+        mSelecting = rect != null;
+        if (rect != null) mSelection.set(rect);
+        invalidate();
+    }
+
+    /** Current graphics as an unmodifiable snapshot. */
+    @SuppressWarnings("unchecked")
+    public List<T> getGraphics() {
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(mGraphics.get()));
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        left = (w - AppUtil.dpToPx(getContext(), rectWidth)) / 2f;
-        top = (h - AppUtil.dpToPx(getContext(), rectHeight)) / 2f;
-        endY = top;
+        float left = (w - mRectWidthPx) / 2f;
+        float top = (h - mRectHeightPx) / 2f;
+        mScanRect.set(left, top, left + mRectWidthPx, top + mRectHeightPx);
+        mLaserY = top;
+        mTransform.setViewWidth(w);
+        updateScanRegion(w, h);
         super.onSizeChanged(w, h, oldw, oldh);
+        if (mLaserRequested) startLaser();
     }
 
-    public void remove(T graphic) {
-        synchronized (mLock) { mGraphics.remove(graphic); }
-        postInvalidate();
-    }
+    /** Starts or restarts the laser sweep; call when the hosting activity resumes. */
+    public void startLaser() {
+        mLaserRequested = true;
+        if (mLaserAnimator != null) mLaserAnimator.cancel();
+        // Not laid out yet: onSizeChanged starts the sweep.
+        if (getHeight() == 0) return;
 
-    public List<T> getGraphics() {
-        synchronized (mLock) { return new Vector<>(mGraphics); }
+        long sweepMillis = Math.max(1, mRectHeightPx * 1000L / (mLaserStepPx * LEGACY_FRAMES_PER_SECOND));
+        mLaserAnimator = ValueAnimator.ofFloat(mScanRect.top, mScanRect.bottom);
+        mLaserAnimator.setDuration(sweepMillis);
+        mLaserAnimator.setRepeatMode(ValueAnimator.REVERSE);
+        mLaserAnimator.setRepeatCount(ValueAnimator.INFINITE);
+        mLaserAnimator.setInterpolator(new LinearInterpolator());
+        mLaserAnimator.addUpdateListener(animation -> {
+            long now = SystemClock.uptimeMillis();
+            if (now - mLastLaserFrameMillis < LASER_FRAME_INTERVAL_MILLIS) return;
+            mLastLaserFrameMillis = now;
+            mLaserY = (float) animation.getAnimatedValue();
+            invalidate();
+        });
+        mLaserAnimator.start();
     }
 
-    public float getWidthScaleFactor() { return mWidthScaleFactor; }
-    public float getHeightScaleFactor() { return mHeightScaleFactor; }
+    /** Stops the laser so nothing is redrawn until results change; call when the activity pauses. */
+    public void stopLaser() {
+        mLaserRequested = false;
+        if (mLaserAnimator != null) {
+            mLaserAnimator.cancel();
+            mLaserAnimator = null;
+        }
+    }
 
-    public void setCameraInfo(int previewWidth, int previewHeight, int facing) {
-        synchronized (mLock) { mFacing = facing; }
-        postInvalidate();
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mLaserRequested) startLaser();
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    protected void onDetachedFromWindow() {
+        if (mLaserAnimator != null) mLaserAnimator.cancel();
+        super.onDetachedFromWindow();
+    }
 
-        int cornerRadius = 0;
-        Paint eraser = new Paint();
-        eraser.setAntiAlias(true);
-        eraser.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+    public void setScanRegion(ScanRegion region) {
+        mScanRegion = region;
+        if (getWidth() > 0 && getHeight() > 0) updateScanRegion(getWidth(), getHeight());
+    }
 
-        RectF rect = new RectF(left, top,
-                AppUtil.dpToPx(getContext(), rectWidth) + left,
-                AppUtil.dpToPx(getContext(), rectHeight) + top);
-        canvas.drawRoundRect(rect, cornerRadius, cornerRadius, eraser);
+    private void updateScanRegion(int w, int h) {
+        if (mScanRegion == null || w <= 0 || h <= 0) return;
+        float l = Math.max(0f, mScanRect.left / w);
+        float t = Math.max(0f, mScanRect.top / h);
+        float r = Math.min(1f, mScanRect.right / w);
+        float b = Math.min(1f, mScanRect.bottom / h);
+        if (l < r && t < b) {
+            mScanRegion.setBounds(l, t, r, b);
+        } else {
+            mScanRegion.clear();
+        }
+    }
 
-        Paint line = new Paint();
-        line.setColor(lineColor);
-        line.setStrokeWidth((float) lineWidth);
+    public int getScanOffsetX() { return mScanRegion != null ? mScanRegion.getOffsetX() : 0; }
+    public int getScanOffsetY() { return mScanRegion != null ? mScanRegion.getOffsetY() : 0; }
 
-        if (endY >= top + AppUtil.dpToPx(getContext(), rectHeight) + frames) {
-            revAnimation = true;
-        } else if (endY == top + frames) {
-            revAnimation = false;
-        }
+    public float getWidthScaleFactor() { return mTransform.getScaleX(); }
+    public float getHeightScaleFactor() { return mTransform.getScaleY(); }
 
-        if (revAnimation) {
-            endY -= frames;
-        } else {
-            endY += frames;
+    public void setCameraInfo(int previewWidth, int previewHeight, int facing) {
+        mTransform.setMirrored(facing == CameraSource.CAMERA_FACING_FRONT);
+        postInvalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        canvas.drawRect(mScanRect, mEraserPaint);
+        canvas.drawLine(mScanRect.left, mLaserY, mScanRect.right, mLaserY, mLaserPaint);
+        for (Graphic graphic : mGraphics.get()) {
+            graphic.draw(canvas);
         }
-        canvas.drawLine(left, endY, left + AppUtil.dpToPx(getContext(), rectWidth), endY, line);
-        invalidate();
+        if (mSelecting) canvas.drawRect(mSelection, mSelectionPaint);
     }
 }
@@ -0,0 +1,95 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed geometric buckets from 10 us to about 30 s, each
+ * 25% wider than the previous one, so percentiles are accurate to within one bucket.
+ * Recording is a binary search and an atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+    private static final long MIN_BOUND_NANOS = 10_000;
+    private static final double BUCKET_RATIO = 1.25;
+    private static final long[] BOUNDS_NANOS = new long[68];
+
+    static {
+        double bound = MIN_BOUND_NANOS;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            BOUNDS_NANOS[i] = (long) bound;
+            bound *= BUCKET_RATIO;
+        }
+    }
+
+    // The last bucket counts everything above the largest bound.
+    private final AtomicLongArray mCounts = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        int index = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+        mCounts.incrementAndGet(index >= 0 ? index : -index - 1);
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    public long getCount() { return mCount.get(); }
+    public long getTotalNanos() { return mTotalNanos.get(); }
+
+    public double getMeanMillis() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / 1e6 / count;
+    }
+
+    /** Upper bound of the bucket holding the given quantile (0..1), capped at the largest recorded value. */
+    public double getPercentileMillis(double quantile) {
+        long[] counts = new long[mCounts.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        long max = mMaxNanos.get();
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long bound = i < BOUNDS_NANOS.length ? BOUNDS_NANOS[i] : max;
+                return Math.min(bound, max) / 1e6;
+            }
+        }
+        return max / 1e6;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) mCounts.set(i, 0);
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /** count, meanMillis, p50Millis, p90Millis, p99Millis and maxMillis. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("count", getCount());
+        snapshot.put("meanMillis", getMeanMillis());
+        snapshot.put("p50Millis", getPercentileMillis(0.50));
+        snapshot.put("p90Millis", getPercentileMillis(0.90));
+        snapshot.put("p99Millis", getPercentileMillis(0.99));
+        snapshot.put("maxMillis", mMaxNanos.get() / 1e6);
+        return snapshot;
+    }
+}
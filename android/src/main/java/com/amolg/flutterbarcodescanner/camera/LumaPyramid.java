@@ -0,0 +1,54 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Half-resolution level of an NV21 frame built with a 2x2 box filter over the luma plane.
+ * The level buffer is reused between frames and its chroma half stays neutral.
+ */
+public final class LumaPyramid {
+    public static final int LEVEL_SCALE = 2;
+    private static final int MIN_LEVEL_SIZE = 240;
+
+    private ByteBuffer mLevel;
+    private int mWidth;
+    private int mHeight;
+
+    public static boolean canDownsample(int width, int height) {
+        return Math.min(width, height) / LEVEL_SCALE >= MIN_LEVEL_SIZE;
+    }
+
+    public ByteBuffer downsample(ByteBuffer src, int width, int height) {
+        int levelWidth = (width / LEVEL_SCALE) & ~1;
+        int levelHeight = (height / LEVEL_SCALE) & ~1;
+        int size = ScanRegion.getNv21Size(levelWidth, levelHeight);
+        if (mLevel == null || mLevel.capacity() < size || levelWidth != mWidth || levelHeight != mHeight) {
+            if (mLevel == null || mLevel.capacity() < size) mLevel = ByteBuffer.allocate(size);
+            Arrays.fill(mLevel.array(), levelWidth * levelHeight, size, (byte) 128);
+            mWidth = levelWidth;
+            mHeight = levelHeight;
+        }
+        boxFilter(src.array(), width, mLevel.array(), levelWidth, levelHeight);
+        mLevel.clear();
+        mLevel.limit(size);
+        return mLevel;
+    }
+
+    public int getWidth() { return mWidth; }
+    public int getHeight() { return mHeight; }
+
+    public static void boxFilter(byte[] src, int srcWidth, byte[] dst, int dstWidth, int dstHeight) {
+        int dstPos = 0;
+        for (int y = 0; y < dstHeight; y++) {
+            int row0 = (2 * y) * srcWidth;
+            int row1 = row0 + srcWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                int sx = 2 * x;
+                int sum = (src[row0 + sx] & 0xff) + (src[row0 + sx + 1] & 0xff)
+                        + (src[row1 + sx] & 0xff) + (src[row1 + sx + 1] & 0xff);
+                dst[dstPos++] = (byte) ((sum + 2) >> 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Maps detector coordinates in the upright preview frame to overlay view coordinates,
+ * mirroring horizontally for the front camera.
+ */
+public final class OverlayTransform {
+    private volatile float mScaleX = 1.0f, mScaleY = 1.0f;
+    private volatile int mViewWidth;
+    private volatile boolean mMirrored;
+
+    public void setScale(float scaleX, float scaleY) {
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+    }
+
+    public void setViewWidth(int width) { mViewWidth = width; }
+    public void setMirrored(boolean mirrored) { mMirrored = mirrored; }
+
+    public float getScaleX() { return mScaleX; }
+    public float getScaleY() { return mScaleY; }
+
+    public float scaleX(float horizontal) { return horizontal * mScaleX; }
+    public float scaleY(float vertical) { return vertical * mScaleY; }
+
+    public float translateX(float x) { return mMirrored ? mViewWidth - x * mScaleX : x * mScaleX; }
+    public float translateY(float y) { return y * mScaleY; }
+
+    /** Maps {@code count} interleaved {x, y} points in place, adding the scan region offset first. */
+    public void mapPoints(float[] points, int count, int offsetX, int offsetY) {
+        final float scaleX = mScaleX, scaleY = mScaleY;
+        final int viewWidth = mViewWidth;
+        final boolean mirrored = mMirrored;
+        for (int i = 0; i < count * 2; i += 2) {
+            float x = (points[i] + offsetX) * scaleX;
+            points[i] = mirrored ? viewWidth - x : x;
+            points[i + 1] = (points[i + 1] + offsetY) * scaleY;
+        }
+    }
+}
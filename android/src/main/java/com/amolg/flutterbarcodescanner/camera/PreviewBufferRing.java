@@ -0,0 +1,75 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.hardware.Camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed set of preview callback buffers that outlives camera restarts and switches.
+ * The slot index is stored in the spare trailing byte of each buffer, which the camera
+ * never writes, so mapping a callback's byte[] back to its ByteBuffer is O(1).
+ */
+@SuppressWarnings("deprecation")
+public class PreviewBufferRing implements FrameProcessor.BufferReleaser {
+    private static final int MAX_DEPTH = Byte.MAX_VALUE;
+
+    private final int mDepth;
+    private ByteBuffer[] mSlots;
+    private int mFrameSize;
+    private Camera mCamera;
+
+    private int mBuffersInFlight;
+    private long mStarvationCount;
+    private long mAllocationCount;
+
+    public PreviewBufferRing(int depth) {
+        if (depth <= 0 || depth > MAX_DEPTH) throw new IllegalArgumentException("Invalid ring depth: " + depth);
+        mDepth = depth;
+    }
+
+    /** Hands every slot to the camera, allocating only when the frame size grew. */
+    public synchronized void attach(Camera camera, int frameSize) {
+        if (mSlots == null || frameSize > mFrameSize) {
+            mSlots = new ByteBuffer[mDepth];
+            for (int i = 0; i < mDepth; i++) {
+                byte[] bytes = new byte[frameSize + 1];
+                bytes[frameSize] = (byte) i;
+                mSlots[i] = ByteBuffer.wrap(bytes);
+            }
+            mFrameSize = frameSize;
+            mAllocationCount++;
+        }
+        mCamera = camera;
+        mBuffersInFlight = 0;
+        for (ByteBuffer slot : mSlots) {
+            camera.addCallbackBuffer(slot.array());
+        }
+    }
+
+    public synchronized void detach() {
+        mCamera = null;
+        mBuffersInFlight = 0;
+    }
+
+    /** Maps a preview callback buffer back to its slot, or null if it does not belong to the ring. */
+    public synchronized ByteBuffer acquire(byte[] data) {
+        if (mSlots == null || data.length != mFrameSize + 1) return null;
+        int index = data[mFrameSize];
+        if (index < 0 || index >= mDepth || mSlots[index].array() != data) return null;
+
+        if (++mBuffersInFlight >= mDepth) mStarvationCount++;
+        return mSlots[index];
+    }
+
+    /** Returns a buffer taken with {@link #acquire} to the camera. */
+    @Override
+    public synchronized void release(ByteBuffer buffer) {
+        if (mBuffersInFlight > 0) mBuffersInFlight--;
+        if (mCamera != null) mCamera.addCallbackBuffer(buffer.array());
+    }
+
+    public int getDepth() { return mDepth; }
+    public synchronized int getBuffersInFlight() { return mBuffersInFlight; }
+    public synchronized long getStarvationCount() { return mStarvationCount; }
+    public synchronized long getAllocationCount() { return mAllocationCount; }
+}
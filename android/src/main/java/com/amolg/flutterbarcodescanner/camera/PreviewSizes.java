@@ -0,0 +1,59 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.Arrays;
+
+/**
+ * Preview size selection kept free of camera classes. Sizes are flattened as
+ * {@code {width0, height0, width1, height1, ...}} and pairs as
+ * {@code {previewWidth, previewHeight, pictureWidth, pictureHeight, ...}}.
+ */
+public final class PreviewSizes {
+    static final float ASPECT_RATIO_TOLERANCE = 0.01f;
+    public static final int PAIR_STRIDE = 4;
+
+    private PreviewSizes() {}
+
+    /**
+     * Pairs each preview size with the first picture size of the same aspect ratio. If no preview
+     * size has a matching picture size, every preview size is returned with a 0x0 picture size.
+     */
+    public static int[] generateValidPairs(int[] previewSizes, int[] pictureSizes) {
+        int[] pairs = new int[previewSizes.length * 2];
+        int count = 0;
+        for (int i = 0; i < previewSizes.length; i += 2) {
+            float previewAspectRatio = (float) previewSizes[i] / (float) previewSizes[i + 1];
+            for (int j = 0; j < pictureSizes.length; j += 2) {
+                float pictureAspectRatio = (float) pictureSizes[j] / (float) pictureSizes[j + 1];
+                if (Math.abs(previewAspectRatio - pictureAspectRatio) < ASPECT_RATIO_TOLERANCE) {
+                    pairs[count++] = previewSizes[i];
+                    pairs[count++] = previewSizes[i + 1];
+                    pairs[count++] = pictureSizes[j];
+                    pairs[count++] = pictureSizes[j + 1];
+                    break;
+                }
+            }
+        }
+        if (count == 0) {
+            for (int i = 0; i < previewSizes.length; i += 2) {
+                pairs[count++] = previewSizes[i];
+                pairs[count++] = previewSizes[i + 1];
+                count += 2;
+            }
+        }
+        return count == pairs.length ? pairs : Arrays.copyOf(pairs, count);
+    }
+
+    /** Offset of the pair whose preview size is closest to the desired size, or -1 if there is none. */
+    public static int selectPair(int[] pairs, int desiredWidth, int desiredHeight) {
+        int selected = -1;
+        int minDiff = Integer.MAX_VALUE;
+        for (int i = 0; i < pairs.length; i += PAIR_STRIDE) {
+            int diff = Math.abs(pairs[i] - desiredWidth) + Math.abs(pairs[i + 1] - desiredHeight);
+            if (diff < minDiff) {
+                selected = i;
+                minDiff = diff;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,325 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.graphics.SurfaceTexture;
+import android.util.Log;
+import android.view.SurfaceHolder;
+
+import com.google.android.gms.common.images.Size;
+import com.google.android.gms.vision.Detector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays back a file written by {@link FrameRecorder} through the same frame pipeline as the
+ * camera sources, either paced by the recorded timestamps or as fast as detection allows.
+ * The file is memory-mapped and needs no camera or preview surface, so detector throughput,
+ * drop rate and time-to-decode can be measured deterministically.
+ */
+public class ReplayFrameSource implements FrameSource {
+    private static final String TAG = "ReplayFrameSource";
+    private static final long MAX_MAP_SIZE = 256L * 1024 * 1024;
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+    public interface OnReplayCompleteListener {
+        /** Called on the replay thread once every frame was fed and processed, or replay was stopped. */
+        void onReplayComplete(ReplayFrameSource source);
+    }
+
+    private File mFile;
+    private FrameProcessor<?> mFrameProcessor;
+    private boolean mRealTime = true;
+    private OnReplayCompleteListener mListener;
+
+    private final Object mLock = new Object();
+    private RandomAccessFile mInput;
+    private Thread mReplayThread;
+    private volatile boolean mStopped;
+    private ArrayBlockingQueue<ByteBuffer> mFree;
+    private int mBufferCount;
+
+    private long[] mOffsets;
+    private long[] mTimestamps;
+    private int mFrameCount;
+    private Size mPreviewSize;
+    private int mRotation;
+
+    private volatile long mSourceDroppedCount;
+    private volatile long mSkippedCount;
+
+    public static class Builder {
+        private final ReplayFrameSource mSource = new ReplayFrameSource();
+        private int mProcessingThreadCount = CameraSource.DEFAULT_PROCESSING_THREADS;
+        private ScanRegion mScanRegion;
+
+        public <T> Builder(File file, Detector<T> detector, Detector.Processor<T> processor) {
+            if (file == null) throw new IllegalArgumentException("No file supplied.");
+            if (detector == null) throw new IllegalArgumentException("No detector supplied.");
+            if (processor == null) throw new IllegalArgumentException("No processor supplied.");
+            mSource.mFile = file;
+            mSource.mFrameProcessor = new FrameProcessor<>(detector, processor);
+        }
+
+        /** Paces frames by their recorded timestamps (the default) or feeds them as fast as possible. */
+        public Builder setRealTime(boolean realTime) {
+            mSource.mRealTime = realTime;
+            return this;
+        }
+
+        public Builder setProcessingThreadCount(int count) {
+            if (count <= 0) throw new IllegalArgumentException("Invalid thread count: " + count);
+            mProcessingThreadCount = count;
+            return this;
+        }
+
+        public Builder setLumaPyramid(DetectionMapper<?> mapper) {
+            mSource.mFrameProcessor.setPyramidMapper(mapper);
+            return this;
+        }
+
+        public Builder setTiledDecoder(TiledDecoder<?> decoder) {
+            mSource.mFrameProcessor.setTiledDecoder(decoder);
+            return this;
+        }
+
+        public Builder setQualityGate(FrameQualityGate gate) {
+            mSource.mFrameProcessor.setQualityGate(gate);
+            return this;
+        }
+
+        public Builder setSceneChangeDetector(SceneChangeDetector detector) {
+            mSource.mFrameProcessor.setSceneChangeDetector(detector);
+            return this;
+        }
+
+        public Builder setDetectorShared(boolean shared) {
+            mSource.mFrameProcessor.setDetectorShared(shared);
+            return this;
+        }
+
+        public Builder setScanRegion(ScanRegion region) {
+            mScanRegion = region;
+            return this;
+        }
+
+        public Builder setOnReplayCompleteListener(OnReplayCompleteListener listener) {
+            mSource.mListener = listener;
+            return this;
+        }
+
+        public ReplayFrameSource build() {
+            mSource.mFrameProcessor.setMetrics(new ScanMetrics());
+            mSource.mFrameProcessor.setThreadCount(mProcessingThreadCount);
+            mSource.mFrameProcessor.setScanRegion(mScanRegion);
+            return mSource;
+        }
+    }
+
+    private ReplayFrameSource() {}
+
+    /** The surface is ignored: replayed frames are only sent to the detector. */
+    @Override
+    public ReplayFrameSource start(SurfaceHolder surfaceHolder) throws IOException {
+        return start();
+    }
+
+    /** The texture is ignored: replayed frames are only sent to the detector. */
+    @Override
+    public ReplayFrameSource start(SurfaceTexture surfaceTexture) throws IOException {
+        return start();
+    }
+
+    public ReplayFrameSource start() throws IOException {
+        synchronized (mLock) {
+            if (mReplayThread != null) return this;
+
+            mInput = new RandomAccessFile(mFile, "r");
+            try {
+                index(mInput.getChannel());
+            } catch (IOException e) {
+                mInput.close();
+                mInput = null;
+                throw e;
+            }
+
+            int width = mPreviewSize.getWidth();
+            int height = mPreviewSize.getHeight();
+            mBufferCount = CameraSource.getPreviewBufferCount(mFrameProcessor.getThreadCount());
+            mFree = new ArrayBlockingQueue<>(mBufferCount);
+            for (int i = 0; i < mBufferCount; i++) {
+                mFree.add(ByteBuffer.allocate(ScanRegion.getNv21Size(width, height)));
+            }
+
+            mStopped = false;
+            mSourceDroppedCount = 0;
+            mFrameProcessor.start(mFree::offer, width, height, mRotation, CameraSource.CAMERA_FACING_BACK);
+            mReplayThread = new Thread(this::replay, TAG);
+            mReplayThread.start();
+        }
+        return this;
+    }
+
+    /** Reads every record header; records whose size differs from the first one are skipped. */
+    private void index(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(FrameRecorder.RECORD_HEADER_SIZE);
+        readFully(channel, header, 0, FrameRecorder.FILE_HEADER_SIZE);
+        if (header.getInt() != FrameRecorder.MAGIC || header.getInt() != FrameRecorder.VERSION) {
+            throw new IOException("Not a frame recording: " + mFile);
+        }
+
+        mOffsets = new long[64];
+        mTimestamps = new long[64];
+        mFrameCount = 0;
+        mSkippedCount = 0;
+        mPreviewSize = null;
+        long position = FrameRecorder.FILE_HEADER_SIZE;
+        while (position + FrameRecorder.RECORD_HEADER_SIZE <= size) {
+            readFully(channel, header, position, FrameRecorder.RECORD_HEADER_SIZE);
+            int width = header.getInt();
+            int height = header.getInt();
+            int rotation = header.getInt();
+            long timestampNanos = header.getLong();
+            int length = header.getInt();
+            long data = position + FrameRecorder.RECORD_HEADER_SIZE;
+            // A truncated tail is what a recorder killed mid-write leaves behind.
+            if (length < 0 || data + length > size) break;
+            position = data + length;
+
+            if (mPreviewSize == null) {
+                mPreviewSize = new Size(width, height);
+                mRotation = rotation;
+            } else if (width != mPreviewSize.getWidth() || height != mPreviewSize.getHeight()) {
+                mSkippedCount++;
+                continue;
+            }
+            if (mFrameCount == mOffsets.length) {
+                mOffsets = Arrays.copyOf(mOffsets, mFrameCount * 2);
+                mTimestamps = Arrays.copyOf(mTimestamps, mFrameCount * 2);
+            }
+            mOffsets[mFrameCount] = data;
+            mTimestamps[mFrameCount] = timestampNanos;
+            mFrameCount++;
+        }
+        if (mPreviewSize == null) throw new IOException("No frames recorded in " + mFile);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+            throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+    }
+
+    private void replay() {
+        int length = ScanRegion.getNv21Size(mPreviewSize.getWidth(), mPreviewSize.getHeight());
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        long startNanos = System.nanoTime();
+        try {
+            FileChannel channel = mInput.getChannel();
+            for (int i = 0; i < mFrameCount && !mStopped; i++) {
+                ByteBuffer buffer;
+                if (mRealTime) {
+                    long delayNanos = startNanos + (mTimestamps[i] - mTimestamps[0]) - System.nanoTime();
+                    if (delayNanos > 0) TimeUnit.NANOSECONDS.sleep(delayNanos);
+                    buffer = mFree.poll();
+                    if (buffer == null) {
+                        // The camera would have dropped this frame too: no preview buffer was free.
+                        mSourceDroppedCount++;
+                        continue;
+                    }
+                } else {
+                    buffer = mFree.take();
+                }
+
+                long offset = mOffsets[i];
+                if (window == null || offset + length > windowStart + window.capacity()) {
+                    windowStart = offset;
+                    long windowSize = Math.min(Math.max(MAX_MAP_SIZE, length), channel.size() - offset);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+                }
+                window.position((int) (offset - windowStart));
+                window.get(buffer.array(), 0, length);
+                buffer.clear();
+
+                mFrameProcessor.setNextFrame(buffer);
+            }
+            awaitDrained();
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            Log.e(TAG, "Replay of " + mFile + " failed", e);
+        }
+        if (mListener != null) mListener.onReplayComplete(this);
+    }
+
+    /** Waits until the pipeline has returned every buffer, i.e. the last frame was processed. */
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (!mStopped && mFree.size() < mBufferCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (mLock) {
+            mStopped = true;
+            if (mReplayThread != null) {
+                mReplayThread.interrupt();
+                try {
+                    mReplayThread.join();
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "Replay thread interrupted on stop.");
+                }
+                mReplayThread = null;
+            }
+            mFrameProcessor.stop();
+            if (mInput != null) {
+                try {
+                    mInput.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to close " + mFile, e);
+                }
+                mInput = null;
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        synchronized (mLock) {
+            stop();
+            mFrameProcessor.release();
+        }
+    }
+
+    @Override public Size getPreviewSize() { return mPreviewSize; }
+    @Override public int getCameraFacing() { return CameraSource.CAMERA_FACING_BACK; }
+    @Override public int getRotation() { return mRotation; }
+    @Override public Future<Integer> doZoom(float scale) { return CameraControl.completed(0); }
+    @Override public boolean isContinuousFocus() { return false; }
+    @Override public Future<Boolean> setTorch(boolean on) { return CameraControl.completed(false); }
+
+    public int getFrameCount() { return mFrameCount; }
+    /** Frames dropped in real-time mode because every preview buffer was still in use. */
+    public long getSourceDroppedCount() { return mSourceDroppedCount; }
+    /** Records skipped because their size differs from the first frame. */
+    public long getSkippedCount() { return mSkippedCount; }
+    /**
+     * Per-stage latencies and frame counts of this replay only: frames handed to the pipeline are
+     * {@link ScanMetrics#getFramesReceived()}, so the replay keeps no counters of its own for them.
+     */
+    public ScanMetrics getMetrics() { return mFrameProcessor.getMetrics(); }
+}
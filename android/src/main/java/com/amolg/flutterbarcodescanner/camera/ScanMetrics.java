@@ -0,0 +1,98 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage latency histograms and frame counters of the scan pipeline. Camera sources report
+ * into the shared default instance; a replay source can use its own to measure in isolation.
+ *
+ * <p>Stages: {@code bufferWait} from a frame arriving to a worker taking it, {@code frameBuild}
+ * for cropping, gating and building the detector Frame, {@code detect}, {@code dispatch} to the
+ * trackers, {@code scan} from arrival to dispatch, and {@code channelSend} from a result being
+ * queued to it being sent to Dart.
+ */
+public final class ScanMetrics {
+    private static final ScanMetrics sDefault = new ScanMetrics();
+
+    private final LatencyHistogram mBufferWait = new LatencyHistogram();
+    private final LatencyHistogram mFrameBuild = new LatencyHistogram();
+    private final LatencyHistogram mDetect = new LatencyHistogram();
+    private final LatencyHistogram mDispatch = new LatencyHistogram();
+    private final LatencyHistogram mScan = new LatencyHistogram();
+    private final LatencyHistogram mChannelSend = new LatencyHistogram();
+
+    private final AtomicLong mFramesReceived = new AtomicLong();
+    private final AtomicLong mFramesDropped = new AtomicLong();
+    private final AtomicLong mFramesSkipped = new AtomicLong();
+    private final AtomicLong mFramesThrottled = new AtomicLong();
+    private final AtomicLong mTrackersCreated = new AtomicLong();
+    private final AtomicLong mTrackersReused = new AtomicLong();
+
+    public static ScanMetrics getDefault() { return sDefault; }
+
+    public LatencyHistogram getBufferWait() { return mBufferWait; }
+    public LatencyHistogram getFrameBuild() { return mFrameBuild; }
+    public LatencyHistogram getDetect() { return mDetect; }
+    public LatencyHistogram getDispatch() { return mDispatch; }
+    public LatencyHistogram getScan() { return mScan; }
+    public LatencyHistogram getChannelSend() { return mChannelSend; }
+
+    void onFrameReceived() { mFramesReceived.incrementAndGet(); }
+    /** A pending frame was replaced by a newer one before any worker took it. */
+    void onFrameDropped() { mFramesDropped.incrementAndGet(); }
+    /** A frame was taken but not decoded, e.g. rejected by the quality gate or unchanged. */
+    void onFrameSkipped() { mFramesSkipped.incrementAndGet(); }
+    /** The frame governor held a frame back before it was queued. */
+    void onFrameThrottled() { mFramesThrottled.incrementAndGet(); }
+
+    /** A tracker was handed out for a newly seen code, taken from a pool if {@code reused}. */
+    public void onTrackerAcquired(boolean reused) {
+        (reused ? mTrackersReused : mTrackersCreated).incrementAndGet();
+    }
+
+    public long getFramesReceived() { return mFramesReceived.get(); }
+    public long getFramesProcessed() { return mDetect.getCount(); }
+    public long getFramesDropped() { return mFramesDropped.get(); }
+    public long getFramesSkipped() { return mFramesSkipped.get(); }
+    public long getFramesThrottled() { return mFramesThrottled.get(); }
+    public long getTrackersCreated() { return mTrackersCreated.get(); }
+    public long getTrackersReused() { return mTrackersReused.get(); }
+
+    public void reset() {
+        mBufferWait.reset();
+        mFrameBuild.reset();
+        mDetect.reset();
+        mDispatch.reset();
+        mScan.reset();
+        mChannelSend.reset();
+        mFramesReceived.set(0);
+        mFramesDropped.set(0);
+        mFramesSkipped.set(0);
+        mFramesThrottled.set(0);
+        mTrackersCreated.set(0);
+        mTrackersReused.set(0);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stages = new HashMap<>();
+        stages.put("bufferWait", mBufferWait.snapshot());
+        stages.put("frameBuild", mFrameBuild.snapshot());
+        stages.put("detect", mDetect.snapshot());
+        stages.put("dispatch", mDispatch.snapshot());
+        stages.put("scan", mScan.snapshot());
+        stages.put("channelSend", mChannelSend.snapshot());
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("stages", stages);
+        snapshot.put("framesReceived", getFramesReceived());
+        snapshot.put("framesProcessed", getFramesProcessed());
+        snapshot.put("framesDropped", getFramesDropped());
+        snapshot.put("framesSkipped", getFramesSkipped());
+        snapshot.put("framesThrottled", getFramesThrottled());
+        snapshot.put("trackersCreated", getTrackersCreated());
+        snapshot.put("trackersReused", getTrackersReused());
+        return snapshot;
+    }
+}
@@ -0,0 +1,109 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Scan window expressed as fractions of the on-screen preview, mapped back to the
+ * sensor orientation of the NV21 preview frames so only that part is decoded.
+ */
+public class ScanRegion {
+    private float mLeft, mTop, mRight = 1f, mBottom = 1f;
+    private boolean mEnabled;
+
+    private volatile int mOffsetX, mOffsetY;
+    private final int[] mOffset = new int[2];
+
+    public synchronized void setBounds(float left, float top, float right, float bottom) {
+        if (left < 0 || top < 0 || right > 1 || bottom > 1 || left >= right || top >= bottom) {
+            throw new IllegalArgumentException("Invalid scan region: " + left + "," + top + "," + right + "," + bottom);
+        }
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+        mEnabled = true;
+    }
+
+    public synchronized void clear() {
+        mEnabled = false;
+        mOffsetX = 0;
+        mOffsetY = 0;
+    }
+
+    public synchronized boolean isEnabled() { return mEnabled; }
+
+    /** Offset of the cropped frame inside the full upright frame, used to map results back. */
+    public int getOffsetX() { return mOffsetX; }
+    public int getOffsetY() { return mOffsetY; }
+
+    /**
+     * Computes the crop rectangle {x, y, width, height} in sensor coordinates for a frame of the
+     * given size, mirrored for a front camera. Returns false when the region is disabled or covers
+     * the whole frame.
+     */
+    public synchronized boolean computeCrop(int frameWidth, int frameHeight, int rotation, boolean mirrored, int[] out) {
+        if (!mEnabled) return false;
+
+        float left = mLeft, right = mRight;
+        if (mirrored) {
+            left = 1f - mRight;
+            right = 1f - mLeft;
+        }
+
+        float x0, y0, x1, y1;
+        switch (rotation & 3) {
+            case 1:  x0 = mTop;          y0 = 1f - right;  x1 = mBottom;      y1 = 1f - left;   break;
+            case 2:  x0 = 1f - right;    y0 = 1f - mBottom; x1 = 1f - left;   y1 = 1f - mTop;   break;
+            case 3:  x0 = 1f - mBottom;  y0 = left;        x1 = 1f - mTop;    y1 = right;       break;
+            default: x0 = left;          y0 = mTop;        x1 = right;        y1 = mBottom;     break;
+        }
+
+        int cropX = ((int) (x0 * frameWidth)) & ~1;
+        int cropY = ((int) (y0 * frameHeight)) & ~1;
+        int cropWidth = Math.min(((int) Math.ceil(x1 * frameWidth) + 1) & ~1, frameWidth) - cropX;
+        int cropHeight = Math.min(((int) Math.ceil(y1 * frameHeight) + 1) & ~1, frameHeight) - cropY;
+        if (cropWidth <= 0 || cropHeight <= 0 || (cropWidth == frameWidth && cropHeight == frameHeight)) {
+            return false;
+        }
+
+        out[0] = cropX;
+        out[1] = cropY;
+        out[2] = cropWidth;
+        out[3] = cropHeight;
+
+        getUprightOffset(out, frameWidth, frameHeight, rotation, mOffset);
+        mOffsetX = mOffset[0];
+        mOffsetY = mOffset[1];
+        return true;
+    }
+
+    /** Maps the top-left of a sensor-space crop {x, y, width, height} into the upright frame. */
+    static void getUprightOffset(int[] crop, int frameWidth, int frameHeight, int rotation, int[] out) {
+        final int cropX = crop[0], cropY = crop[1], cropWidth = crop[2], cropHeight = crop[3];
+        switch (rotation & 3) {
+            case 1:  out[0] = frameHeight - (cropY + cropHeight); out[1] = cropX; break;
+            case 2:  out[0] = frameWidth - (cropX + cropWidth);   out[1] = frameHeight - (cropY + cropHeight); break;
+            case 3:  out[0] = cropY;                              out[1] = frameWidth - (cropX + cropWidth); break;
+            default: out[0] = cropX;                              out[1] = cropY; break;
+        }
+    }
+
+    public static int getNv21Size(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /** Copies the luma rows and the interleaved VU rows of the crop into dst. */
+    public static void cropNv21(byte[] src, int frameWidth, int frameHeight, int[] crop, byte[] dst) {
+        final int cropX = crop[0], cropY = crop[1], cropWidth = crop[2], cropHeight = crop[3];
+
+        int dstPos = 0;
+        for (int row = 0; row < cropHeight; row++) {
+            System.arraycopy(src, (cropY + row) * frameWidth + cropX, dst, dstPos, cropWidth);
+            dstPos += cropWidth;
+        }
+
+        final int chromaStart = frameWidth * frameHeight;
+        for (int row = 0; row < cropHeight / 2; row++) {
+            System.arraycopy(src, chromaStart + (cropY / 2 + row) * frameWidth + cropX, dst, dstPos, cropWidth);
+            dstPos += cropWidth;
+        }
+    }
+}
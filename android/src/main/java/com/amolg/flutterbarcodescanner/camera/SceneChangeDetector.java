@@ -0,0 +1,83 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Detects a static scene by comparing a coarse block-average luma signature of each frame
+ * against the signature of the last frame that produced a detection. While nothing moves,
+ * the frame processor skips detection; the first frame that differs resumes it.
+ */
+public class SceneChangeDetector {
+    private static final int GRID = 16;
+    public static final int SIGNATURE_SIZE = GRID * GRID;
+    private static final int SAMPLES_PER_BLOCK_SIDE = 4;
+
+    private volatile float mThreshold = 6f;
+
+    private final int[] mReference = new int[SIGNATURE_SIZE];
+    private boolean mHasReference;
+    private long mSkippedCount;
+
+    /** Mean absolute difference of block averages (0-255) below which the scene counts as static. */
+    public SceneChangeDetector setThreshold(float threshold) {
+        if (threshold <= 0) throw new IllegalArgumentException("Invalid threshold: " + threshold);
+        mThreshold = threshold;
+        return this;
+    }
+
+    public float getThreshold() { return mThreshold; }
+
+    /**
+     * Fills {@code signature} for the given luma plane and returns true if it matches the last
+     * decoded scene. A mismatch drops the reference so detection runs until the next decode.
+     */
+    public boolean isStatic(byte[] luma, int width, int height, int[] signature) {
+        computeSignature(luma, width, height, signature);
+        synchronized (this) {
+            if (!mHasReference) return false;
+
+            long diff = 0;
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                diff += Math.abs(signature[i] - mReference[i]);
+            }
+            if (diff < mThreshold * SIGNATURE_SIZE) {
+                mSkippedCount++;
+                return true;
+            }
+            mHasReference = false;
+            return false;
+        }
+    }
+
+    /** Records the signature of a frame that produced detections as the static reference. */
+    public synchronized void onDecoded(int[] signature) {
+        System.arraycopy(signature, 0, mReference, 0, SIGNATURE_SIZE);
+        mHasReference = true;
+    }
+
+    public synchronized void reset() { mHasReference = false; }
+
+    public synchronized long getSkippedCount() { return mSkippedCount; }
+
+    static void computeSignature(byte[] luma, int width, int height, int[] signature) {
+        for (int by = 0; by < GRID; by++) {
+            int top = by * height / GRID;
+            int bottom = (by + 1) * height / GRID;
+            int stepY = Math.max(1, (bottom - top) / SAMPLES_PER_BLOCK_SIDE);
+            for (int bx = 0; bx < GRID; bx++) {
+                int left = bx * width / GRID;
+                int right = (bx + 1) * width / GRID;
+                int stepX = Math.max(1, (right - left) / SAMPLES_PER_BLOCK_SIDE);
+
+                int sum = 0;
+                int count = 0;
+                for (int y = top; y < bottom; y += stepY) {
+                    int row = y * width;
+                    for (int x = left; x < right; x += stepX) {
+                        sum += luma[row + x] & 0xff;
+                        count++;
+                    }
+                }
+                signature[by * GRID + bx] = count > 0 ? sum / count : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable packed R-tree over axis-aligned boxes, bulk-loaded with sort-tile-recursive
+ * ordering. Built once per detector frame and then queried from the UI thread, so it needs no
+ * locking. Point, nearest and rectangle queries only descend into nodes that can contain a
+ * match, which is O(log n) for the non-overlapping boxes of codes in view.
+ */
+public final class SpatialIndex<T> {
+    private static final int NODE_CAPACITY = 8;
+
+    private final Object[] mItems;
+    // mLevels[0] holds the item boxes in tree order; each higher level holds the boxes of
+    // consecutive runs of NODE_CAPACITY entries of the level below, ending in the root.
+    private final float[][] mLevels;
+    private final int[] mLevelSizes;
+
+    /** {@code boxes} holds {left, top, right, bottom} for each of the first {@code count} items. */
+    public SpatialIndex(List<? extends T> items, float[] boxes, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        sortTiles(order, boxes);
+
+        mItems = new Object[count];
+        float[] leaves = new float[count * 4];
+        for (int i = 0; i < count; i++) {
+            mItems[i] = items.get(order[i]);
+            System.arraycopy(boxes, order[i] * 4, leaves, i * 4, 4);
+        }
+
+        int levels = 1;
+        for (int size = count; size > 1; size = (size + NODE_CAPACITY - 1) / NODE_CAPACITY) levels++;
+        mLevels = new float[levels][];
+        mLevelSizes = new int[levels];
+        mLevels[0] = leaves;
+        mLevelSizes[0] = count;
+        for (int level = 1; level < levels; level++) {
+            int childCount = mLevelSizes[level - 1];
+            int size = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            float[] children = mLevels[level - 1];
+            float[] nodes = new float[size * 4];
+            for (int node = 0; node < size; node++) {
+                int first = node * NODE_CAPACITY;
+                int last = Math.min(first + NODE_CAPACITY, childCount);
+                nodes[node * 4] = nodes[node * 4 + 1] = Float.MAX_VALUE;
+                nodes[node * 4 + 2] = nodes[node * 4 + 3] = -Float.MAX_VALUE;
+                for (int child = first; child < last; child++) {
+                    nodes[node * 4] = Math.min(nodes[node * 4], children[child * 4]);
+                    nodes[node * 4 + 1] = Math.min(nodes[node * 4 + 1], children[child * 4 + 1]);
+                    nodes[node * 4 + 2] = Math.max(nodes[node * 4 + 2], children[child * 4 + 2]);
+                    nodes[node * 4 + 3] = Math.max(nodes[node * 4 + 3], children[child * 4 + 3]);
+                }
+            }
+            mLevels[level] = nodes;
+            mLevelSizes[level] = size;
+        }
+    }
+
+    /** Orders items into vertical slices by center x, each sorted by center y. */
+    private static void sortTiles(Integer[] order, final float[] boxes) {
+        int count = order.length;
+        if (count <= NODE_CAPACITY) return;
+        Arrays.sort(order, (a, b) -> Float.compare(boxes[a * 4] + boxes[a * 4 + 2], boxes[b * 4] + boxes[b * 4 + 2]));
+        int leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leafCount)) * NODE_CAPACITY;
+        Comparator<Integer> byCenterY =
+                (a, b) -> Float.compare(boxes[a * 4 + 1] + boxes[a * 4 + 3], boxes[b * 4 + 1] + boxes[b * 4 + 3]);
+        for (int start = 0; start < count; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, count), byCenterY);
+        }
+    }
+
+    public int size() { return mItems.length; }
+
+    /** The smallest box containing the point, so a code printed inside another one wins. */
+    public T findAt(float x, float y) {
+        if (mItems.length == 0) return null;
+        int[] best = {-1};
+        float[] bestArea = {Float.MAX_VALUE};
+        findAt(mLevels.length - 1, 0, x, y, best, bestArea);
+        return best[0] >= 0 ? item(best[0]) : null;
+    }
+
+    private void findAt(int level, int node, float x, float y, int[] best, float[] bestArea) {
+        float[] boxes = mLevels[level];
+        if (!contains(boxes, node, x, y)) return;
+        if (level == 0) {
+            float area = (boxes[node * 4 + 2] - boxes[node * 4]) * (boxes[node * 4 + 3] - boxes[node * 4 + 1]);
+            if (area < bestArea[0]) {
+                bestArea[0] = area;
+                best[0] = node;
+            }
+            return;
+        }
+        int last = Math.min((node + 1) * NODE_CAPACITY, mLevelSizes[level - 1]);
+        for (int child = node * NODE_CAPACITY; child < last; child++) {
+            findAt(level - 1, child, x, y, best, bestArea);
+        }
+    }
+
+    /** The item whose box is closest to the point, or null if none is within {@code maxDistance}. */
+    public T findNearest(float x, float y, float maxDistance) {
+        if (mItems.length == 0) return null;
+        int[] best = {-1};
+        float[] bestDistance = {maxDistance * maxDistance};
+        findNearest(mLevels.length - 1, 0, x, y, best, bestDistance);
+        return best[0] >= 0 ? item(best[0]) : null;
+    }
+
+    private void findNearest(int level, int node, float x, float y, int[] best, float[] bestDistance) {
+        float[] boxes = mLevels[level];
+        float distance = distanceSquared(boxes, node, x, y);
+        if (distance > bestDistance[0] || (level == 0 && distance == bestDistance[0] && best[0] >= 0)) return;
+        if (level == 0) {
+            bestDistance[0] = distance;
+            best[0] = node;
+            return;
+        }
+        int last = Math.min((node + 1) * NODE_CAPACITY, mLevelSizes[level - 1]);
+        for (int child = node * NODE_CAPACITY; child < last; child++) {
+            findNearest(level - 1, child, x, y, best, bestDistance);
+        }
+    }
+
+    /** Adds every item whose box intersects the rectangle to {@code out}, in tree order. */
+    public void findIntersecting(float left, float top, float right, float bottom, List<T> out) {
+        if (mItems.length > 0) findInRect(mLevels.length - 1, 0, left, top, right, bottom, false, out);
+    }
+
+    /** Adds every item whose box lies entirely inside the rectangle to {@code out}, in tree order. */
+    public void findContained(float left, float top, float right, float bottom, List<T> out) {
+        if (mItems.length > 0) findInRect(mLevels.length - 1, 0, left, top, right, bottom, true, out);
+    }
+
+    private void findInRect(int level, int node, float left, float top, float right, float bottom,
+                            boolean contained, List<T> out) {
+        float[] boxes = mLevels[level];
+        if (boxes[node * 4] > right || boxes[node * 4 + 2] < left
+                || boxes[node * 4 + 1] > bottom || boxes[node * 4 + 3] < top) {
+            return;
+        }
+        if (level == 0) {
+            if (!contained || (boxes[node * 4] >= left && boxes[node * 4 + 2] <= right
+                    && boxes[node * 4 + 1] >= top && boxes[node * 4 + 3] <= bottom)) {
+                out.add(item(node));
+            }
+            return;
+        }
+        int last = Math.min((node + 1) * NODE_CAPACITY, mLevelSizes[level - 1]);
+        for (int child = node * NODE_CAPACITY; child < last; child++) {
+            findInRect(level - 1, child, left, top, right, bottom, contained, out);
+        }
+    }
+
+    private static boolean contains(float[] boxes, int node, float x, float y) {
+        return x >= boxes[node * 4] && x <= boxes[node * 4 + 2] && y >= boxes[node * 4 + 1] && y <= boxes[node * 4 + 3];
+    }
+
+    private static float distanceSquared(float[] boxes, int node, float x, float y) {
+        float dx = Math.max(0, Math.max(boxes[node * 4] - x, x - boxes[node * 4 + 2]));
+        float dy = Math.max(0, Math.max(boxes[node * 4 + 1] - y, y - boxes[node * 4 + 3]));
+        return dx * dx + dy * dy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int index) { return (T) mItems[index]; }
+}
@@ -0,0 +1,265 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.annotation.TargetApi;
+import android.graphics.ImageFormat;
+import android.os.Build;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits an NV21 frame into a grid of overlapping tiles and decodes them, together with the
+ * full frame, in parallel on a {@link ForkJoinPool}. Tile results are shifted into upright
+ * frame coordinates and codes straddling tile borders are reported once.
+ *
+ * <p>Detectors are not documented as safe for concurrent {@code detect()} calls, so tiles run on
+ * detectors owned by this decoder, each checked out by one task at a time.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class TiledDecoder<T> {
+    public interface DetectorFactory<T> { Detector<T> create(); }
+
+    private final DetectionMerger<T> mMerger;
+    private final DetectorFactory<T> mDetectorFactory;
+    private final int mColumns;
+    private final int mRows;
+    private final float mOverlap;
+    private final ForkJoinPool mPool;
+
+    private final int mMaxDetectors;
+    private final List<Detector<T>> mDetectors = new ArrayList<>();
+    private final BlockingQueue<Detector<T>> mFreeDetectors;
+
+    private final ArrayDeque<ByteBuffer> mFreeBuffers = new ArrayDeque<>();
+
+    /**
+     * @param overlap fraction of a tile's size added on each side; it should exceed the size of
+     *                the largest code relative to a tile so every code lies fully in some tile.
+     */
+    public TiledDecoder(DetectionMerger<T> merger, DetectorFactory<T> detectorFactory,
+                        int columns, int rows, float overlap, int parallelism) {
+        if (columns < 1 || rows < 1 || columns * rows < 2) {
+            throw new IllegalArgumentException("Invalid tile grid: " + columns + "x" + rows);
+        }
+        if (overlap < 0 || overlap >= 1) throw new IllegalArgumentException("Invalid tile overlap: " + overlap);
+        mMerger = merger;
+        mDetectorFactory = detectorFactory;
+        mColumns = columns;
+        mRows = rows;
+        mOverlap = overlap;
+        // No more tasks than one frame's tiles can run at once, and each needs its own detector.
+        mMaxDetectors = Math.max(1, Math.min(parallelism, columns * rows + 1));
+        mFreeDetectors = new ArrayBlockingQueue<>(mMaxDetectors);
+        mPool = new ForkJoinPool(mMaxDetectors);
+    }
+
+    public static boolean isSupported() { return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP; }
+
+    public int getTileCount() { return mColumns * mRows; }
+
+    SparseArray<T> decode(ByteBuffer data, int width, int height, int frameId, long timeMillis, int rotation) {
+        List<TileTask> tasks = new ArrayList<>(mColumns * mRows + 1);
+        tasks.add(new TileTask(data, width, height, frameId, timeMillis, rotation, 0, 0, width, height));
+
+        int tileWidth = (width + mColumns - 1) / mColumns;
+        int tileHeight = (height + mRows - 1) / mRows;
+        int marginX = (int) (tileWidth * mOverlap);
+        int marginY = (int) (tileHeight * mOverlap);
+        for (int row = 0; row < mRows; row++) {
+            int top = Math.max(0, row * tileHeight - marginY) & ~1;
+            int bottom = Math.min(height, (row + 1) * tileHeight + marginY) & ~1;
+            for (int column = 0; column < mColumns; column++) {
+                int left = Math.max(0, column * tileWidth - marginX) & ~1;
+                int right = Math.min(width, (column + 1) * tileWidth + marginX) & ~1;
+                tasks.add(new TileTask(data, width, height,
+                        frameId, timeMillis, rotation, left, top, right - left, bottom - top));
+            }
+        }
+
+        for (TileTask task : tasks) mPool.execute(task);
+
+        // Every task is joined before anything is thrown: they all read the caller's buffer, which
+        // goes back to the camera as soon as this returns. A failed tile only loses its own codes.
+        Merge<T> merge = new Merge<>(mMerger);
+        RuntimeException fullFrameError = null;
+        for (TileTask task : tasks) {
+            SparseArray<T> items;
+            try {
+                items = task.join();
+            } catch (RuntimeException e) {
+                if (task == tasks.get(0)) fullFrameError = e;
+                continue;
+            }
+            if (items != null) merge.add(items);
+        }
+        if (fullFrameError != null) throw fullFrameError;
+        return merge.getItems();
+    }
+
+    /** Called once the frame processor has stopped, so no task still holds a detector. */
+    void release() {
+        mPool.shutdown();
+        synchronized (mFreeBuffers) { mFreeBuffers.clear(); }
+        synchronized (mDetectors) {
+            for (Detector<T> detector : mDetectors) detector.release();
+            mDetectors.clear();
+            mFreeDetectors.clear();
+        }
+    }
+
+    int getDetectorCount() {
+        synchronized (mDetectors) { return mDetectors.size(); }
+    }
+
+    private Detector<T> acquireDetector() throws InterruptedException {
+        Detector<T> detector = mFreeDetectors.poll();
+        if (detector != null) return detector;
+        synchronized (mDetectors) {
+            if (mDetectors.size() < mMaxDetectors) {
+                detector = mDetectorFactory.create();
+                mDetectors.add(detector);
+                return detector;
+            }
+        }
+        return mFreeDetectors.take();
+    }
+
+    private void releaseDetector(Detector<T> detector) { mFreeDetectors.offer(detector); }
+
+    private ByteBuffer acquireBuffer(int size) {
+        ByteBuffer buffer;
+        synchronized (mFreeBuffers) { buffer = mFreeBuffers.poll(); }
+        if (buffer == null || buffer.capacity() < size) buffer = ByteBuffer.allocate(size);
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        synchronized (mFreeBuffers) { mFreeBuffers.push(buffer); }
+    }
+
+    /**
+     * Collects detections not already present under the detector's own keys, which trackers use
+     * as ids. The full frame is merged first, so its keys always win. Each item's bounds are
+     * computed once when it is added rather than on every comparison.
+     */
+    static final class Merge<T> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final DetectionMerger<T> mMerger;
+        private final SparseArray<T> mItems = new SparseArray<>();
+        private final List<T> mAdded = new ArrayList<>(INITIAL_CAPACITY);
+        private int[] mBounds = new int[INITIAL_CAPACITY * 4];
+        private boolean[] mHasBounds = new boolean[INITIAL_CAPACITY];
+
+        Merge(DetectionMerger<T> merger) { mMerger = merger; }
+
+        SparseArray<T> getItems() { return mItems; }
+
+        void add(SparseArray<T> items) {
+            for (int i = 0; i < items.size(); i++) {
+                T item = items.valueAt(i);
+                int index = mAdded.size();
+                ensureCapacity(index + 1);
+                mHasBounds[index] = mMerger.getBounds(item, mBounds, index * 4);
+                if (containsSame(item, index)) continue;
+                int key = items.keyAt(i);
+                // Two different codes under one key only happens across separate detect() calls.
+                while (mItems.indexOfKey(key) >= 0) key++;
+                mItems.put(key, item);
+                mAdded.add(item);
+            }
+        }
+
+        /** Compares the candidate, whose bounds sit in slot {@code candidate}, with every item added so far. */
+        private boolean containsSame(T item, int candidate) {
+            for (int i = 0; i < candidate; i++) {
+                if (mMerger.isSameDetection(mAdded.get(i), item)
+                        && (!mHasBounds[i] || !mHasBounds[candidate] || intersects(i * 4, candidate * 4))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean intersects(int first, int second) {
+            int[] b = mBounds;
+            return b[first] < b[second + 2] && b[second] < b[first + 2]
+                    && b[first + 1] < b[second + 3] && b[second + 1] < b[first + 3];
+        }
+
+        private void ensureCapacity(int count) {
+            if (count <= mHasBounds.length) return;
+            int capacity = Math.max(count, mHasBounds.length * 2);
+            mBounds = Arrays.copyOf(mBounds, capacity * 4);
+            mHasBounds = Arrays.copyOf(mHasBounds, capacity);
+        }
+    }
+
+    private final class TileTask extends RecursiveTask<SparseArray<T>> {
+        private final ByteBuffer mData;
+        private final int mFrameWidth, mFrameHeight;
+        private final int mFrameId;
+        private final long mTimeMillis;
+        private final int mRotation;
+        private final int[] mCrop;
+
+        TileTask(ByteBuffer data, int frameWidth, int frameHeight, int frameId,
+                 long timeMillis, int rotation, int x, int y, int width, int height) {
+            mData = data;
+            mFrameWidth = frameWidth;
+            mFrameHeight = frameHeight;
+            mFrameId = frameId;
+            mTimeMillis = timeMillis;
+            mRotation = rotation;
+            mCrop = new int[] {x, y, width, height};
+        }
+
+        @Override
+        protected SparseArray<T> compute() {
+            boolean fullFrame = mCrop[2] == mFrameWidth && mCrop[3] == mFrameHeight;
+            Detector<T> detector;
+            try {
+                detector = acquireDetector();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            ByteBuffer buffer = fullFrame ? mData : acquireBuffer(ScanRegion.getNv21Size(mCrop[2], mCrop[3]));
+            try {
+                if (!fullFrame) ScanRegion.cropNv21(mData.array(), mFrameWidth, mFrameHeight, mCrop, buffer.array());
+                Frame frame = new Frame.Builder()
+                        .setImageData(buffer, mCrop[2], mCrop[3], ImageFormat.NV21)
+                        .setId(mFrameId)
+                        .setTimestampMillis(mTimeMillis)
+                        .setRotation(mRotation)
+                        .build();
+
+                SparseArray<T> items = detector.detect(frame);
+                if (items == null || fullFrame) return items;
+
+                int[] offset = new int[2];
+                ScanRegion.getUprightOffset(mCrop, mFrameWidth, mFrameHeight, mRotation, offset);
+                for (int i = 0; i < items.size(); i++) {
+                    mMerger.map(items.valueAt(i), 1f, offset[0], offset[1]);
+                }
+                return items;
+            } finally {
+                releaseDetector(detector);
+                if (!fullFrame) releaseBuffer(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.graphics.Point;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatchCaptureTest {
+    private static Barcode barcode(String value, int left, int top) {
+        Barcode barcode = new Barcode();
+        barcode.format = Barcode.QR_CODE;
+        barcode.rawValue = value;
+        barcode.cornerPoints = new Point[] {
+                new Point(left, top), new Point(left + 10, top), new Point(left + 10, top + 10), new Point(left, top + 10)};
+        return barcode;
+    }
+
+    private static SparseArray<Barcode> frame(Barcode... barcodes) {
+        SparseArray<Barcode> items = new SparseArray<>();
+        for (int i = 0; i < barcodes.length; i++) items.put(i, barcodes[i]);
+        return items;
+    }
+
+    @Test
+    public void completesOnceTheTargetCountIsSeen() {
+        BatchCapture batch = new BatchCapture(2, 0);
+        assertFalse(batch.onFrame(frame(barcode("a", 0, 0)), 1, 0, 0, 0));
+        assertFalse(batch.onFrame(frame(barcode("a", 5, 5)), 2, 0, 0, 0));
+        assertTrue(batch.onFrame(frame(barcode("a", 5, 5), barcode("b", 50, 50)), 3, 0, 0, 0));
+        // Only the first completing frame reports completion.
+        assertFalse(batch.onFrame(frame(barcode("c", 0, 0)), 4, 0, 0, 0));
+        assertEquals(2, batch.getResults().size());
+    }
+
+    @Test
+    public void completesAfterStableFramesWithoutNewCodes() {
+        BatchCapture batch = new BatchCapture(0, 3);
+        assertFalse(batch.onFrame(frame(), 1, 0, 0, 0));
+        assertFalse(batch.onFrame(frame(barcode("a", 0, 0)), 2, 0, 0, 0));
+        assertFalse(batch.onFrame(frame(barcode("a", 0, 0)), 3, 0, 0, 0));
+        assertFalse(batch.onFrame(frame(), 4, 0, 0, 0));
+        assertTrue(batch.onFrame(frame(barcode("a", 0, 0)), 5, 0, 0, 0));
+    }
+
+    @Test
+    public void keepsEachCodesLatestPositionInFullFrameCoordinates() {
+        BatchCapture batch = new BatchCapture(0, 0);
+        batch.onFrame(frame(barcode("a", 0, 0)), 1, 100, 0, 0);
+        // Found in a scan-region crop that starts at (200, 40) in the upright frame.
+        batch.onFrame(frame(barcode("a", 10, 20)), 2, 133, 200, 40);
+
+        List<Map<String, Object>> results = batch.getResults();
+        assertEquals(1, results.size());
+        Map<String, Object> result = results.get(0);
+        assertEquals(2, result.get("frameId"));
+        assertEquals(133L, result.get("timestampMillis"));
+        assertArrayEquals(new int[] {210, 60, 220, 70}, (int[]) result.get("bbox"));
+        assertArrayEquals(new int[] {210, 60, 220, 60, 220, 70, 210, 70}, (int[]) result.get("corners"));
+    }
+
+    @Test
+    public void ignoresCodesWithoutAValueAndFramesAfterCompletion() {
+        BatchCapture batch = new BatchCapture(0, 0);
+        batch.onFrame(frame(barcode(null, 0, 0)), 1, 0, 0, 0);
+        assertEquals(0, batch.getResults().size());
+
+        batch.complete();
+        batch.onFrame(frame(barcode("a", 0, 0)), 2, 0, 0, 0);
+        assertEquals(0, batch.getResults().size());
+    }
+}
@@ -0,0 +1,74 @@
+package com.amolg.flutterbarcodescanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultDeduplicatorTest {
+    private static final int QR = 256;
+
+    @Test
+    public void suppressesAValueWhileItStaysInView() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(8);
+        deduplicator.configure(100, 0);
+
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 0));
+        // Seen every 50 ms, so the window never lapses.
+        for (long now = 50; now <= 500; now += 50) assertFalse(deduplicator.shouldDeliver(QR, "a", now));
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 700));
+
+        assertEquals(2, deduplicator.getDeliveredCount());
+        assertEquals(10, deduplicator.getSuppressedCount());
+    }
+
+    @Test
+    public void onSeenKeepsTheWindowOpen() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(8);
+        deduplicator.configure(100, 0);
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 0));
+        deduplicator.onSeen(QR, "a", 90);
+        assertFalse(deduplicator.shouldDeliver(QR, "a", 180));
+    }
+
+    @Test
+    public void cooldownSpacesOutDeliveriesOfOneValue() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(8);
+        deduplicator.configure(0, 1000);
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 0));
+        assertFalse(deduplicator.shouldDeliver(QR, "a", 500));
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 1000));
+    }
+
+    @Test
+    public void formatIsPartOfTheKey() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(8);
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 0));
+        assertTrue(deduplicator.shouldDeliver(QR + 1, "a", 0));
+        assertFalse(deduplicator.shouldDeliver(QR, "a", 1));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlySeenValue() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(2);
+        deduplicator.shouldDeliver(QR, "a", 0);
+        deduplicator.shouldDeliver(QR, "b", 1);
+        deduplicator.shouldDeliver(QR, "a", 2);
+        deduplicator.shouldDeliver(QR, "c", 3);
+
+        assertEquals(2, deduplicator.size());
+        assertFalse(deduplicator.shouldDeliver(QR, "a", 4));
+        assertTrue("b was evicted, so it counts as new", deduplicator.shouldDeliver(QR, "b", 5));
+    }
+
+    @Test
+    public void clearForgetsValuesButKeepsCounters() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(8);
+        deduplicator.shouldDeliver(QR, "a", 0);
+        deduplicator.clear();
+        assertEquals(0, deduplicator.size());
+        assertTrue(deduplicator.shouldDeliver(QR, "a", 1));
+        assertEquals(2, deduplicator.getDeliveredCount());
+    }
+}
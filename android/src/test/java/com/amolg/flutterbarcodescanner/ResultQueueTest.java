@@ -0,0 +1,197 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ResultQueueTest {
+    private final FlutterBarcodeScannerPlugin mPlugin = new FlutterBarcodeScannerPlugin();
+    private final List<Object> mSent = new ArrayList<>();
+    private final ResultQueue mQueue = new ResultQueue();
+
+    @Before
+    public void setUp() {
+        mPlugin.onListen(null, new EventChannel.EventSink() {
+            @Override public void success(Object event) { mSent.add(event); }
+            @Override public void error(String code, String message, Object details) {}
+            @Override public void endOfStream() {}
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mPlugin.onCancel(null);
+    }
+
+    private void drain() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private void offerAll(String... events) {
+        for (String event : events) mQueue.offer(event, null);
+    }
+
+    private long stat(String name) {
+        Map<String, Object> stats = mQueue.getStats();
+        return ((Number) stats.get(name)).longValue();
+    }
+
+    @Test
+    public void dropNewestKeepsTheEventsAlreadyQueued() {
+        mQueue.configure(3, ResultQueue.OverflowPolicy.DROP_NEWEST);
+        offerAll("0", "1", "2", "3", "4");
+        drain();
+
+        assertEquals(Arrays.asList("0", "1", "2"), mSent);
+        assertEquals(2, stat("dropped"));
+        assertEquals(3, stat("maxDepth"));
+    }
+
+    @Test
+    public void dropOldestKeepsTheLatestEvents() {
+        mQueue.configure(3, ResultQueue.OverflowPolicy.DROP_OLDEST);
+        offerAll("0", "1", "2", "3", "4");
+        drain();
+
+        assertEquals(Arrays.asList("2", "3", "4"), mSent);
+        assertEquals(2, stat("dropped"));
+        assertEquals(0, stat("depth"));
+    }
+
+    @Test
+    public void coalesceSendsTheLatestValuePerKeyInFirstSeenOrder() {
+        mQueue.configure(4, ResultQueue.OverflowPolicy.COALESCE);
+        mQueue.offer("a1", "a");
+        mQueue.offer("b1", "b");
+        mQueue.offer("a2", "a");
+        drain();
+
+        assertEquals(Arrays.asList("a2", "b1"), mSent);
+        assertEquals(1, stat("coalesced"));
+    }
+
+    @Test
+    public void coalesceReleasesTheKeyOfADroppedEvent() {
+        mQueue.configure(1, ResultQueue.OverflowPolicy.COALESCE);
+        mQueue.offer("a1", "a");
+        mQueue.offer("b1", "b");
+        drain();
+        assertEquals(Collections.singletonList("a1"), mSent);
+        assertEquals(1, stat("dropped"));
+
+        // Had "b" stayed behind, this would be counted as coalesced and never sent.
+        mQueue.offer("b2", "b");
+        drain();
+        assertEquals(Arrays.asList("a1", "b2"), mSent);
+        assertEquals(0, stat("coalesced"));
+    }
+
+    @Test
+    public void coalesceNeverCountsADroppedValueAsCoalesced() {
+        mQueue.configure(1, ResultQueue.OverflowPolicy.COALESCE);
+        mQueue.offer("a1", "a");
+        mQueue.offer("b1", "b");
+        mQueue.offer("b2", "b");
+        drain();
+
+        assertEquals(Collections.singletonList("a1"), mSent);
+        assertEquals(2, stat("dropped"));
+        assertEquals(0, stat("coalesced"));
+    }
+
+    @Test
+    public void coalesceAccountsForEveryEventAcrossProducers() throws InterruptedException {
+        mQueue.configure(2, ResultQueue.OverflowPolicy.COALESCE);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            final int producer = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) mQueue.offer(producer + ":" + i, "k" + (i % 3));
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) producer.join();
+        drain();
+
+        assertEquals(2000, stat("enqueued"));
+        assertEquals(mSent.size(), stat("delivered"));
+        assertEquals(stat("enqueued"), stat("delivered") + stat("dropped") + stat("coalesced"));
+        assertTrue(mSent.size() <= 2);
+    }
+
+    @Test
+    public void controlEventsAreNeitherDroppedNorCounted() {
+        mQueue.configure(1, ResultQueue.OverflowPolicy.DROP_OLDEST);
+        mQueue.offer("0", null);
+        mQueue.offerControl("end");
+        mQueue.offer("1", null);
+        drain();
+
+        assertEquals(Arrays.asList("end", "1"), mSent);
+        assertEquals(1, stat("dropped"));
+    }
+
+    @Test
+    public void offerAwaitingBlocksOnceCapacityEventsAreWaiting() throws InterruptedException {
+        mQueue.configure(2, ResultQueue.OverflowPolicy.DROP_NEWEST);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 3; i++) mQueue.offerAwaiting(String.valueOf(i));
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue("third event was queued without waiting", producer.isAlive());
+
+        drain();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        drain();
+        assertEquals(Arrays.asList("0", "1", "2"), mSent);
+        assertEquals(0, stat("dropped"));
+    }
+
+    @Test
+    public void configureDiscardsEventsOfTheEarlierSession() {
+        mQueue.configure(4, ResultQueue.OverflowPolicy.COALESCE);
+        mQueue.offer("a1", "a");
+        mQueue.offerControl("end");
+        mQueue.configure(4, ResultQueue.OverflowPolicy.COALESCE);
+        mQueue.offer("a2", "a");
+        drain();
+
+        assertEquals(Collections.singletonList("a2"), mSent);
+        assertEquals(0, stat("coalesced"));
+    }
+
+    @Test
+    public void eventsWithoutAListenerCountAsDropped() {
+        mPlugin.onCancel(null);
+        mQueue.configure(4, ResultQueue.OverflowPolicy.DROP_OLDEST);
+        offerAll("0", "1");
+        drain();
+
+        assertEquals(0, mSent.size());
+        assertEquals(2, stat("dropped"));
+        assertEquals(0, stat("delivered"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.hardware.Camera;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@SuppressWarnings("deprecation")
+public class CameraSourceTest {
+    private static Camera.Parameters parameters(String flattened) {
+        Camera.Parameters parameters = Camera.open().getParameters();
+        parameters.unflatten(flattened);
+        return parameters;
+    }
+
+    @Test
+    public void zoomReportsTheRatioOfTheNewIndexInHundredths() {
+        Camera.Parameters parameters =
+                parameters("zoom-supported=true;max-zoom=4;zoom=0;zoom-ratios=100,150,200,300,400");
+
+        assertEquals(150, CameraSource.zoom(parameters, 2f));
+        assertEquals(1, parameters.getZoom());
+        assertEquals(400, CameraSource.zoom(parameters, 10f));
+        assertEquals(4, parameters.getZoom());
+        // Clamped at both ends of the index range.
+        assertEquals(400, CameraSource.zoom(parameters, 10f));
+        assertEquals(100, CameraSource.zoom(parameters, 0.1f));
+        assertEquals(0, parameters.getZoom());
+    }
+
+    @Test
+    public void zoomIsZeroWhenUnsupported() {
+        Camera.Parameters parameters = parameters("zoom-supported=false;zoom=0");
+        assertEquals(0, CameraSource.zoom(parameters, 2f));
+        assertEquals(0, parameters.getZoom());
+    }
+}
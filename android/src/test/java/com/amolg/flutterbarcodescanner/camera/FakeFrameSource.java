@@ -0,0 +1,96 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.graphics.SurfaceTexture;
+import android.view.SurfaceHolder;
+
+import com.google.android.gms.common.images.Size;
+import com.google.android.gms.vision.Detector;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame source driven by a test: each {@link #push} hands a synthetic NV21 frame to the same
+ * {@link FrameProcessor} the camera backends use, from a fixed pool of preview buffers.
+ */
+class FakeFrameSource implements FrameSource {
+    private final FrameProcessor<?> mFrameProcessor;
+    private final Size mPreviewSize;
+    private final int mBufferCount;
+    private final ArrayBlockingQueue<ByteBuffer> mFree;
+    private boolean mStarted;
+
+    <T> FakeFrameSource(Detector<T> detector, Detector.Processor<T> processor, int width, int height,
+                        int threadCount) {
+        mFrameProcessor = new FrameProcessor<>(detector, processor);
+        mFrameProcessor.setMetrics(new ScanMetrics());
+        mFrameProcessor.setThreadCount(threadCount);
+        mPreviewSize = new Size(width, height);
+        mBufferCount = CameraSource.getPreviewBufferCount(threadCount);
+        mFree = new ArrayBlockingQueue<>(mBufferCount);
+        for (int i = 0; i < mBufferCount; i++) {
+            mFree.add(ByteBuffer.allocate(ScanRegion.getNv21Size(width, height)));
+        }
+    }
+
+    @Override
+    public FakeFrameSource start(SurfaceHolder surfaceHolder) { return start(); }
+
+    @Override
+    public FakeFrameSource start(SurfaceTexture surfaceTexture) { return start(); }
+
+    FakeFrameSource start() {
+        if (!mStarted) {
+            mStarted = true;
+            mFrameProcessor.start(mFree::offer, mPreviewSize.getWidth(), mPreviewSize.getHeight(), 0,
+                    CameraSource.CAMERA_FACING_BACK);
+        }
+        return this;
+    }
+
+    /** Fills a free preview buffer with {@code luma} and queues it; waits where a camera would drop the frame. */
+    void push(byte luma) throws InterruptedException {
+        ByteBuffer buffer = mFree.poll(1, TimeUnit.SECONDS);
+        if (buffer == null) throw new IllegalStateException("No preview buffer was returned");
+        Arrays.fill(buffer.array(), luma);
+        buffer.clear();
+        mFrameProcessor.setNextFrame(buffer);
+    }
+
+    /** Waits until the pipeline returned every buffer, i.e. the last pushed frame was processed. */
+    boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (mFree.size() < mBufferCount) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    ScanMetrics getMetrics() { return mFrameProcessor.getMetrics(); }
+
+    @Override
+    public void stop() {
+        if (mStarted) {
+            mStarted = false;
+            mFrameProcessor.stop();
+        }
+    }
+
+    @Override
+    public void release() {
+        stop();
+        mFrameProcessor.release();
+    }
+
+    @Override public Size getPreviewSize() { return mPreviewSize; }
+    @Override public int getCameraFacing() { return CameraSource.CAMERA_FACING_BACK; }
+    @Override public int getRotation() { return 0; }
+
+    @Override public Future<Integer> doZoom(float scale) { return CameraControl.completed(0); }
+    @Override public boolean isContinuousFocus() { return false; }
+    @Override public Future<Boolean> setTorch(boolean on) { return CameraControl.completed(false); }
+}
@@ -0,0 +1,94 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class FrameProcessorTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAMES = 50;
+
+    /** Reports one detection per frame, keyed and valued by the frame id. */
+    private static final class FrameIdDetector extends Detector<Integer> {
+        @Override
+        public SparseArray<Integer> detect(Frame frame) {
+            SparseArray<Integer> items = new SparseArray<>();
+            items.put(frame.getMetadata().getId(), frame.getMetadata().getId());
+            return items;
+        }
+    }
+
+    private static final class RecordingProcessor implements Detector.Processor<Integer> {
+        final List<Integer> mFrameIds = new ArrayList<>();
+
+        @Override
+        public synchronized void receiveDetections(Detector.Detections<Integer> detections) {
+            SparseArray<Integer> items = detections.getDetectedItems();
+            for (int i = 0; i < items.size(); i++) mFrameIds.add(items.valueAt(i));
+        }
+
+        @Override public void release() {}
+    }
+
+    private final RecordingProcessor mProcessor = new RecordingProcessor();
+    private FakeFrameSource mSource;
+
+    @After
+    public void tearDown() {
+        if (mSource != null) mSource.release();
+    }
+
+    @Test
+    public void deliversFramesInOrderAcrossWorkers() throws InterruptedException {
+        mSource = new FakeFrameSource(new FrameIdDetector(), mProcessor, WIDTH, HEIGHT, 3).start();
+        for (int i = 0; i < FRAMES; i++) mSource.push((byte) i);
+        assertTrue(mSource.awaitIdle(5000));
+        mSource.stop();
+
+        List<Integer> ids = mProcessor.mFrameIds;
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue("frame " + ids.get(i) + " delivered after " + ids.get(i - 1), ids.get(i) > ids.get(i - 1));
+        }
+        ScanMetrics metrics = mSource.getMetrics();
+        assertEquals(FRAMES, metrics.getFramesReceived());
+        assertEquals(ids.size(), metrics.getFramesProcessed());
+        assertEquals(FRAMES, metrics.getFramesProcessed() + metrics.getFramesDropped());
+    }
+
+    @Test
+    public void returnsEveryBufferToTheSource() throws InterruptedException {
+        mSource = new FakeFrameSource(new FrameIdDetector(), mProcessor, WIDTH, HEIGHT, 1).start();
+        // More frames than buffers: this only completes if the pipeline hands each one back.
+        for (int i = 0; i < FRAMES; i++) mSource.push((byte) i);
+        assertTrue(mSource.awaitIdle(5000));
+    }
+
+    @Test
+    public void countsFramesTheSourceNeverQueued() {
+        FrameProcessor<Integer> processor = new FrameProcessor<>(new FrameIdDetector(), mProcessor);
+        ScanMetrics metrics = new ScanMetrics();
+        processor.setMetrics(metrics);
+        processor.onFrameThrottled();
+        processor.onFrameThrottled();
+        processor.onFrameUnbuffered();
+
+        assertEquals(3, metrics.getFramesReceived());
+        assertEquals(2, metrics.getFramesThrottled());
+        assertEquals(1, metrics.getFramesDropped());
+        assertEquals(0, metrics.getFramesProcessed());
+    }
+}
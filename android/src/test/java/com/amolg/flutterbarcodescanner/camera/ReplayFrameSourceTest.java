@@ -0,0 +1,135 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReplayFrameSourceTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Rule public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final class CountingDetector extends Detector<Integer> {
+        final AtomicInteger mDetectCount = new AtomicInteger();
+
+        @Override
+        public SparseArray<Integer> detect(Frame frame) {
+            mDetectCount.incrementAndGet();
+            return new SparseArray<>();
+        }
+    }
+
+    private static final class CountingProcessor implements Detector.Processor<Integer> {
+        final AtomicInteger mDetectionsCount = new AtomicInteger();
+
+        @Override public void receiveDetections(Detector.Detections<Integer> detections) { mDetectionsCount.incrementAndGet(); }
+        @Override public void release() {}
+    }
+
+    /** Records {@code count} frames of the given size, waiting for each write so none is dropped. */
+    private static void record(FrameRecorder recorder, int count, int width, int height) throws InterruptedException {
+        ByteBuffer frame = ByteBuffer.allocate(ScanRegion.getNv21Size(width, height));
+        for (int i = 0; i < count; i++) {
+            long expected = recorder.getRecordedCount() + 1;
+            recorder.record(frame, width, height, 1, i * 33_000_000L);
+            while (recorder.getRecordedCount() < expected) Thread.sleep(1);
+        }
+    }
+
+    private static ReplayFrameSource replay(File file, CountingDetector detector, CountingProcessor processor)
+            throws IOException, InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        ReplayFrameSource source = new ReplayFrameSource.Builder(file, detector, processor)
+                .setRealTime(false)
+                .setProcessingThreadCount(2)
+                .setOnReplayCompleteListener(replayed -> done.countDown())
+                .build();
+        source.start();
+        assertTrue("replay did not finish", done.await(10, TimeUnit.SECONDS));
+        source.stop();
+        return source;
+    }
+
+    @Test
+    public void replaysEveryRecordedFrame() throws Exception {
+        File file = mFolder.newFile("frames.nv21");
+        FrameRecorder recorder = new FrameRecorder(file);
+        record(recorder, 20, WIDTH, HEIGHT);
+        recorder.close();
+        assertEquals(0, recorder.getDroppedCount());
+
+        CountingDetector detector = new CountingDetector();
+        CountingProcessor processor = new CountingProcessor();
+        ReplayFrameSource source = replay(file, detector, processor);
+
+        assertEquals(20, source.getFrameCount());
+        assertEquals(WIDTH, source.getPreviewSize().getWidth());
+        assertEquals(HEIGHT, source.getPreviewSize().getHeight());
+        assertEquals(1, source.getRotation());
+        assertEquals(0, source.getSourceDroppedCount());
+
+        ScanMetrics metrics = source.getMetrics();
+        assertEquals(20, metrics.getFramesReceived());
+        assertEquals(detector.mDetectCount.get(), metrics.getFramesProcessed());
+        assertEquals(processor.mDetectionsCount.get(), metrics.getFramesProcessed());
+        assertEquals(20, metrics.getFramesProcessed() + metrics.getFramesDropped());
+        source.release();
+    }
+
+    @Test
+    public void skipsFramesOfAnotherSizeAndTruncatedTail() throws Exception {
+        File file = mFolder.newFile("frames.nv21");
+        FrameRecorder recorder = new FrameRecorder(file);
+        record(recorder, 3, WIDTH, HEIGHT);
+        record(recorder, 2, WIDTH * 2, HEIGHT);
+        record(recorder, 3, WIDTH, HEIGHT);
+        recorder.close();
+        // Cut the last record short, as a recorder killed mid-write would.
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(output.length() - 10);
+        }
+
+        ReplayFrameSource source = replay(file, new CountingDetector(), new CountingProcessor());
+
+        assertEquals(5, source.getFrameCount());
+        assertEquals(2, source.getSkippedCount());
+        assertEquals(5, source.getMetrics().getFramesReceived());
+        source.release();
+    }
+
+    @Test
+    public void rejectsFilesThatAreNotRecordings() throws Exception {
+        File file = mFolder.newFile("not-frames.bin");
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.writeLong(0);
+        }
+        ReplayFrameSource source = new ReplayFrameSource.Builder(file, new CountingDetector(), new CountingProcessor())
+                .build();
+        try {
+            source.start();
+            fail("expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+}
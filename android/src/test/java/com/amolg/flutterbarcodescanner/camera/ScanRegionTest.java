@@ -0,0 +1,115 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanRegionTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void disabledOrFullFrameRegionDoesNotCrop() {
+        ScanRegion region = new ScanRegion();
+        int[] crop = new int[4];
+        assertFalse(region.computeCrop(WIDTH, HEIGHT, 0, false, crop));
+
+        region.setBounds(0, 0, 1, 1);
+        assertFalse(region.computeCrop(WIDTH, HEIGHT, 0, false, crop));
+    }
+
+    @Test
+    public void cropsTheCenterOfAnUnrotatedFrame() {
+        ScanRegion region = new ScanRegion();
+        region.setBounds(0.25f, 0.25f, 0.75f, 0.75f);
+        int[] crop = new int[4];
+        assertTrue(region.computeCrop(WIDTH, HEIGHT, 0, false, crop));
+        assertArrayEquals(new int[] {160, 120, 320, 240}, crop);
+        assertEquals(160, region.getOffsetX());
+        assertEquals(120, region.getOffsetY());
+    }
+
+    @Test
+    public void mirrorsTheRegionForAFrontCamera() {
+        ScanRegion region = new ScanRegion();
+        region.setBounds(0.125f, 0f, 0.375f, 1f);
+        int[] crop = new int[4];
+        assertTrue(region.computeCrop(WIDTH, HEIGHT, 0, true, crop));
+        assertArrayEquals(new int[] {400, 0, 160, HEIGHT}, crop);
+    }
+
+    /** For every rotation the crop is even-aligned, inside the frame and covers the on-screen region. */
+    @Test
+    public void cropCoversTheRegionInEveryRotation() {
+        float[][] regions = {
+                {0.25f, 0.25f, 0.75f, 0.75f}, {0f, 0.3f, 0.5f, 0.6f}, {0.33f, 0.1f, 0.99f, 0.41f}, {0.7f, 0.7f, 1f, 1f}};
+        int[] crop = new int[4];
+        for (int rotation = 0; rotation < 4; rotation++) {
+            int uprightWidth = (rotation & 1) == 0 ? WIDTH : HEIGHT;
+            int uprightHeight = (rotation & 1) == 0 ? HEIGHT : WIDTH;
+            for (float[] bounds : regions) {
+                ScanRegion region = new ScanRegion();
+                region.setBounds(bounds[0], bounds[1], bounds[2], bounds[3]);
+                assertTrue(region.computeCrop(WIDTH, HEIGHT, rotation, false, crop));
+
+                String what = "rotation " + rotation + ", crop " + crop[0] + "," + crop[1] + " " + crop[2] + "x" + crop[3];
+                assertEquals(what, 0, crop[0] % 2);
+                assertEquals(what, 0, crop[1] % 2);
+                assertTrue(what, crop[0] >= 0 && crop[1] >= 0);
+                assertTrue(what, crop[0] + crop[2] <= WIDTH && crop[1] + crop[3] <= HEIGHT);
+
+                int cropUprightWidth = (rotation & 1) == 0 ? crop[2] : crop[3];
+                int cropUprightHeight = (rotation & 1) == 0 ? crop[3] : crop[2];
+                int x = region.getOffsetX();
+                int y = region.getOffsetY();
+                assertTrue(what, x <= bounds[0] * uprightWidth && x + cropUprightWidth >= bounds[2] * uprightWidth);
+                assertTrue(what, y <= bounds[1] * uprightHeight && y + cropUprightHeight >= bounds[3] * uprightHeight);
+                // Even alignment costs at most a couple of pixels on each side.
+                assertTrue(what, bounds[0] * uprightWidth - x <= 2 && bounds[1] * uprightHeight - y <= 2);
+            }
+        }
+    }
+
+    @Test
+    public void clearResetsTheOffset() {
+        ScanRegion region = new ScanRegion();
+        region.setBounds(0.5f, 0.5f, 1f, 1f);
+        assertTrue(region.computeCrop(WIDTH, HEIGHT, 0, false, new int[4]));
+        region.clear();
+        assertFalse(region.isEnabled());
+        assertEquals(0, region.getOffsetX());
+        assertEquals(0, region.getOffsetY());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyRegion() {
+        new ScanRegion().setBounds(0.5f, 0.2f, 0.5f, 0.8f);
+    }
+
+    @Test
+    public void cropsLumaAndInterleavedChromaRows() {
+        int width = 8;
+        int height = 4;
+        byte[] frame = new byte[ScanRegion.getNv21Size(width, height)];
+        for (int i = 0; i < frame.length; i++) frame[i] = (byte) i;
+
+        int[] crop = {2, 2, 4, 2};
+        byte[] out = new byte[ScanRegion.getNv21Size(crop[2], crop[3])];
+        ScanRegion.cropNv21(frame, width, height, crop, out);
+
+        assertArrayEquals(new byte[] {
+                18, 19, 20, 21,   // luma row 2
+                26, 27, 28, 29,   // luma row 3
+                42, 43, 44, 45,   // VU row 1
+        }, out);
+    }
+
+    @Test
+    public void nv21SizeRoundsChromaUp() {
+        assertEquals(640 * 480 * 3 / 2, ScanRegion.getNv21Size(640, 480));
+        assertEquals(9 + 8, ScanRegion.getNv21Size(3, 3));
+    }
+}
@@ -0,0 +1,142 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SpatialIndexTest {
+    private static final int COUNT = 500;
+
+    private final List<Integer> mItems = new ArrayList<>();
+    private final float[] mBoxes = new float[COUNT * 4];
+    private final SpatialIndex<Integer> mIndex;
+
+    public SpatialIndexTest() {
+        // Enough small, scattered boxes for a three-level tree, some of them overlapping.
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            float left = random.nextFloat() * 1000;
+            float top = random.nextFloat() * 1000;
+            mItems.add(i);
+            mBoxes[i * 4] = left;
+            mBoxes[i * 4 + 1] = top;
+            mBoxes[i * 4 + 2] = left + 5 + random.nextFloat() * 40;
+            mBoxes[i * 4 + 3] = top + 5 + random.nextFloat() * 40;
+        }
+        mIndex = new SpatialIndex<>(mItems, mBoxes, COUNT);
+    }
+
+    private float area(int item) {
+        return (mBoxes[item * 4 + 2] - mBoxes[item * 4]) * (mBoxes[item * 4 + 3] - mBoxes[item * 4 + 1]);
+    }
+
+    private float distanceSquared(int item, float x, float y) {
+        float dx = Math.max(0, Math.max(mBoxes[item * 4] - x, x - mBoxes[item * 4 + 2]));
+        float dy = Math.max(0, Math.max(mBoxes[item * 4 + 1] - y, y - mBoxes[item * 4 + 3]));
+        return dx * dx + dy * dy;
+    }
+
+    private List<Integer> scan(float left, float top, float right, float bottom, boolean contained) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            boolean intersects = mBoxes[i * 4] <= right && mBoxes[i * 4 + 2] >= left
+                    && mBoxes[i * 4 + 1] <= bottom && mBoxes[i * 4 + 3] >= top;
+            boolean inside = mBoxes[i * 4] >= left && mBoxes[i * 4 + 2] <= right
+                    && mBoxes[i * 4 + 1] >= top && mBoxes[i * 4 + 3] <= bottom;
+            if (contained ? inside : intersects) found.add(i);
+        }
+        return found;
+    }
+
+    private static List<Integer> sorted(List<Integer> items) {
+        List<Integer> copy = new ArrayList<>(items);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @Test
+    public void findAtReturnsTheSmallestBoxUnderThePoint() {
+        Random random = new Random(7);
+        for (int query = 0; query < 2000; query++) {
+            float x = random.nextFloat() * 1050;
+            float y = random.nextFloat() * 1050;
+            Integer expected = null;
+            for (int i = 0; i < COUNT; i++) {
+                boolean contains = x >= mBoxes[i * 4] && x <= mBoxes[i * 4 + 2]
+                        && y >= mBoxes[i * 4 + 1] && y <= mBoxes[i * 4 + 3];
+                if (contains && (expected == null || area(i) < area(expected))) expected = i;
+            }
+            assertEquals(expected, mIndex.findAt(x, y));
+        }
+    }
+
+    @Test
+    public void findNearestMatchesALinearScan() {
+        Random random = new Random(11);
+        for (int query = 0; query < 2000; query++) {
+            float x = random.nextFloat() * 1200 - 100;
+            float y = random.nextFloat() * 1200 - 100;
+            float best = Float.MAX_VALUE;
+            for (int i = 0; i < COUNT; i++) best = Math.min(best, distanceSquared(i, x, y));
+
+            Integer found = mIndex.findNearest(x, y, 60);
+            if (best > 60 * 60) {
+                assertNull(found);
+            } else {
+                // Ties may resolve to any of the equally close boxes.
+                assertEquals(best, distanceSquared(found, x, y), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void rectangleQueriesMatchALinearScan() {
+        Random random = new Random(13);
+        for (int query = 0; query < 500; query++) {
+            float left = random.nextFloat() * 1000;
+            float top = random.nextFloat() * 1000;
+            float right = left + random.nextFloat() * 300;
+            float bottom = top + random.nextFloat() * 300;
+
+            List<Integer> intersecting = new ArrayList<>();
+            mIndex.findIntersecting(left, top, right, bottom, intersecting);
+            assertEquals(scan(left, top, right, bottom, false), sorted(intersecting));
+
+            List<Integer> contained = new ArrayList<>();
+            mIndex.findContained(left, top, right, bottom, contained);
+            assertEquals(scan(left, top, right, bottom, true), sorted(contained));
+        }
+    }
+
+    @Test
+    public void containedExcludesBoxesCrossingTheEdge() {
+        SpatialIndex<String> index = new SpatialIndex<>(Arrays.asList("inside", "crossing", "outside"),
+                new float[] {10, 10, 20, 20, 45, 10, 60, 20, 70, 70, 80, 80}, 3);
+
+        List<String> contained = new ArrayList<>();
+        index.findContained(0, 0, 50, 50, contained);
+        assertEquals(Collections.singletonList("inside"), contained);
+
+        List<String> intersecting = new ArrayList<>();
+        index.findIntersecting(0, 0, 50, 50, intersecting);
+        assertEquals(Arrays.asList("inside", "crossing"), intersecting);
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        SpatialIndex<String> index = new SpatialIndex<>(Collections.<String>emptyList(), new float[0], 0);
+        assertNull(index.findAt(0, 0));
+        assertNull(index.findNearest(0, 0, Float.MAX_VALUE));
+        List<String> out = new ArrayList<>();
+        index.findIntersecting(-1, -1, 1, 1, out);
+        index.findContained(-1, -1, 1, 1, out);
+        assertEquals(0, out.size());
+    }
+}
@@ -0,0 +1,222 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class TiledDecoderTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 100;
+    private static final byte MARKER = (byte) 0xFF;
+
+    /** A "code" is a single marker pixel, reported at its position in the frame it was found in. */
+    private static final class Code {
+        int mX, mY;
+
+        Code(int x, int y) {
+            mX = x;
+            mY = y;
+        }
+    }
+
+    private static final class CodeMerger implements DetectionMerger<Code> {
+        @Override
+        public void map(Code item, float scale, int offsetX, int offsetY) {
+            item.mX = Math.round(item.mX * scale) + offsetX;
+            item.mY = Math.round(item.mY * scale) + offsetY;
+        }
+
+        @Override
+        public boolean getBounds(Code item, int[] out, int offset) {
+            out[offset] = item.mX;
+            out[offset + 1] = item.mY;
+            out[offset + 2] = item.mX + 1;
+            out[offset + 3] = item.mY + 1;
+            return true;
+        }
+
+        /** Every code looks alike, so only overlapping positions are the same detection. */
+        @Override
+        public boolean isSameDetection(Code first, Code second) {
+            return true;
+        }
+    }
+
+    /** Finds marker pixels in the luma plane; like a real detector, every call numbers its keys from 0. */
+    private class MarkerDetector extends Detector<Code> {
+        private final AtomicBoolean mInUse = new AtomicBoolean();
+
+        @Override
+        public SparseArray<Code> detect(Frame frame) {
+            if (!mInUse.compareAndSet(false, true)) mConcurrentUse.set(true);
+            try {
+                mCalls.incrementAndGet();
+                Thread.sleep(2);
+                return findMarkers(frame);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                mInUse.set(false);
+            }
+        }
+
+        @Override
+        public void release() {
+            mReleased.incrementAndGet();
+        }
+
+        private SparseArray<Code> findMarkers(Frame frame) {
+            int width = frame.getMetadata().getWidth();
+            int height = frame.getMetadata().getHeight();
+            byte[] luma = frame.getGrayscaleImageData().array();
+            SparseArray<Code> items = new SparseArray<>();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (luma[y * width + x] == MARKER) items.put(items.size(), new Code(x, y));
+                }
+            }
+            return items;
+        }
+    }
+
+    private final AtomicInteger mCalls = new AtomicInteger();
+    private final AtomicInteger mReleased = new AtomicInteger();
+    private final AtomicBoolean mConcurrentUse = new AtomicBoolean();
+    private TiledDecoder<Code> mDecoder = new TiledDecoder<>(new CodeMerger(), MarkerDetector::new, 2, 2, 0.25f, 2);
+
+    @After
+    public void tearDown() {
+        mDecoder.release();
+    }
+
+    private static ByteBuffer frameWithMarkers(int[][] positions) {
+        ByteBuffer frame = ByteBuffer.allocate(ScanRegion.getNv21Size(WIDTH, HEIGHT));
+        for (int[] position : positions) frame.array()[position[1] * WIDTH + position[0]] = MARKER;
+        return frame;
+    }
+
+    private static boolean contains(SparseArray<Code> items, int x, int y) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.valueAt(i).mX == x && items.valueAt(i).mY == y) return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void reportsEachCodeOnceInFrameCoordinates() {
+        // One code per tile, one on the vertical and one on the horizontal tile border.
+        int[][] positions = {{10, 10}, {150, 20}, {30, 80}, {190, 90}, {100, 40}, {60, 50}};
+        SparseArray<Code> items = mDecoder.decode(frameWithMarkers(positions), WIDTH, HEIGHT, 1, 0, 0);
+
+        assertEquals(positions.length, items.size());
+        for (int[] position : positions) {
+            assertTrue("missing " + position[0] + "," + position[1], contains(items, position[0], position[1]));
+        }
+    }
+
+    @Test
+    public void mergeKeepsTheDetectorKeys() {
+        TiledDecoder.Merge<Code> merge = new TiledDecoder.Merge<>(new CodeMerger());
+        SparseArray<Code> full = new SparseArray<>();
+        Code fullFrame = new Code(1, 1);
+        full.put(5, fullFrame);
+        merge.add(full);
+
+        SparseArray<Code> tile = new SparseArray<>();
+        Code other = new Code(2, 2);
+        tile.put(5, other);
+        tile.put(9, new Code(1, 1));
+        tile.put(12, new Code(3, 3));
+        merge.add(tile);
+        SparseArray<Code> merged = merge.getItems();
+
+        assertEquals(3, merged.size());
+        assertSame(fullFrame, merged.get(5));
+        // A different code under a taken key moves to the next free one; a duplicate is dropped.
+        assertSame(other, merged.get(6));
+        assertEquals(3, merged.get(12).mX);
+        assertTrue(merged.indexOfKey(9) < 0);
+    }
+
+    @Test
+    public void mergeGrowsPastItsInitialCapacity() {
+        TiledDecoder.Merge<Code> merge = new TiledDecoder.Merge<>(new CodeMerger());
+        SparseArray<Code> items = new SparseArray<>();
+        for (int i = 0; i < 40; i++) items.put(i, new Code(i * 2, 0));
+        merge.add(items);
+        merge.add(items);
+
+        assertEquals(40, merge.getItems().size());
+    }
+
+    @Test
+    public void neverRunsOneDetectorOnTwoTilesAtOnce() {
+        mDecoder.release();
+        mDecoder = new TiledDecoder<>(new CodeMerger(), MarkerDetector::new, 3, 3, 0.25f, 4);
+        for (int frame = 0; frame < 5; frame++) {
+            mDecoder.decode(frameWithMarkers(new int[][] {{10, 10}}), WIDTH, HEIGHT, frame, 0, 0);
+        }
+
+        assertFalse(mConcurrentUse.get());
+        assertTrue(mDecoder.getDetectorCount() <= 4);
+        int created = mDecoder.getDetectorCount();
+        mDecoder.release();
+        assertEquals(created, mReleased.get());
+    }
+
+    @Test
+    public void failedTileOnlyLosesItsOwnCodes() {
+        mDecoder.release();
+        mDecoder = new TiledDecoder<>(new CodeMerger(), () -> new MarkerDetector() {
+            @Override
+            public SparseArray<Code> detect(Frame frame) {
+                SparseArray<Code> items = super.detect(frame);
+                if (frame.getMetadata().getWidth() < WIDTH && items.size() > 0) throw new IllegalStateException("tile");
+                return items;
+            }
+        }, 2, 2, 0.25f, 2);
+        SparseArray<Code> items = mDecoder.decode(frameWithMarkers(new int[][] {{10, 10}}), WIDTH, HEIGHT, 1, 0, 0);
+
+        assertEquals(1, items.size());
+        assertTrue(contains(items, 10, 10));
+    }
+
+    @Test
+    public void fullFrameFailureIsThrownAfterEveryTileFinished() {
+        mDecoder.release();
+        mDecoder = new TiledDecoder<>(new CodeMerger(), () -> new MarkerDetector() {
+            @Override
+            public SparseArray<Code> detect(Frame frame) {
+                SparseArray<Code> items = super.detect(frame);
+                if (frame.getMetadata().getWidth() == WIDTH) throw new IllegalStateException("full frame");
+                return items;
+            }
+        }, 2, 2, 0.25f, 2);
+        try {
+            mDecoder.decode(frameWithMarkers(new int[0][]), WIDTH, HEIGHT, 1, 0, 0);
+            fail("expected the full-frame failure");
+        } catch (IllegalStateException expected) {
+            // ForkJoinPool may rethrow a copy that wraps the original.
+            assertTrue(expected.toString(), expected.getMessage().contains("full frame"));
+        }
+        // The caller's buffer goes back to the camera after decode(), so no tile may still be reading it.
+        assertEquals(mDecoder.getTileCount() + 1, mCalls.get());
+    }
+}
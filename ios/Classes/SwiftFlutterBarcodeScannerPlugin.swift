@@ -56,7 +56,19 @@ public class SwiftFlutterBarcodeScannerPlugin: NSObject, FlutterPlugin, ScanBarc
     }
     
     public func handle(_ call: FlutterMethodCall, result: @escaping FlutterResult) {
-        let args:Dictionary<String, AnyObject> = call.arguments as! Dictionary<String, AnyObject>;
+        // Only the scanner screen is implemented on iOS; the other methods and batch capture are Android-only.
+        guard call.method == "scanBarcode" else {
+            result(FlutterMethodNotImplemented)
+            return
+        }
+        guard let args = call.arguments as? Dictionary<String, AnyObject> else {
+            result(FlutterError(code: "INVALID_ARGUMENTS", message: "scanBarcode expects a map of arguments", details: nil))
+            return
+        }
+        if let isBatchCapture = args["isBatchCapture"] as? Bool, isBatchCapture {
+            result(FlutterMethodNotImplemented)
+            return
+        }
         if let colorCode = args["lineColor"] as? String{
             SwiftFlutterBarcodeScannerPlugin.lineColor = colorCode
         }else {
@@ -1,11 +1,46 @@
 import 'dart:async';
+import 'dart:convert';
+import 'dart:typed_data';
 import 'package:flutter/services.dart';
+import 'package:flutter/widgets.dart';
 
 /// Scan mode which is either QR code or BARCODE
 enum ScanMode { QR, BARCODE, DEFAULT }
 
+/// Symbologies the detector can be restricted to (Android).
+enum BarcodeFormat {
+  CODE_128,
+  CODE_39,
+  CODE_93,
+  CODABAR,
+  DATA_MATRIX,
+  EAN_13,
+  EAN_8,
+  ITF,
+  QR_CODE,
+  UPC_A,
+  UPC_E,
+  PDF417,
+  AZTEC,
+}
+
+/// What the native result queue drops when Dart falls behind (Android).
+enum OverflowPolicy {
+  /// Drop the oldest queued result.
+  dropOldest,
+
+  /// Drop the incoming result.
+  dropNewest,
+
+  /// Keep one queued entry per value, updated with the latest sighting.
+  coalesce,
+}
+
 /// Provides access to the barcode scanner plugin.
 /// This acts as a bridge between Flutter and the native Android/iOS code.
+///
+/// Members marked (Android) are not implemented on iOS, where they throw a
+/// [MissingPluginException].
 class FlutterBarcodeScanner {
   static const MethodChannel _channel =
       MethodChannel('flutter_barcode_scanner');
@@ -13,26 +48,52 @@ class FlutterBarcodeScanner {
   static const EventChannel _eventChannel =
       EventChannel('flutter_barcode_scanner_receiver');
 
-  static Stream<String>? _onBarcodeReceiver;
+  static Stream<dynamic>? _events;
 
   /// Scan with the camera until a barcode is identified, then return.
   ///
   /// [lineColor] - color of the scanning line in hex format (e.g. "#ff6666").
   /// [cancelButtonText] - text shown on cancel button.
   /// [isShowFlashIcon] - whether to show flash toggle.
-  /// [scanMode] - QR, BARCODE, or DEFAULT.
+  /// [scanMode] - QR, BARCODE, or DEFAULT; QR and BARCODE only search QR codes
+  /// or 1D barcodes respectively.
+  /// [formats] - explicit formats to search for, overriding [scanMode] (Android).
+  /// [dedupWindow] - in continuous mode, a value is not reported again while it
+  /// keeps being seen within this window (Android).
+  /// [dedupCooldown] - minimum time between two reports of the same value in
+  /// continuous mode (Android).
+  /// [scanRegionOnly] - only decode the part of the preview inside the scan window (Android).
+  /// [useCamera2] - use the Camera2 backend where available (Android 5.0+).
+  /// [tiledScan] - also decode overlapping tiles of each frame to find many small
+  /// codes at once (Android 5.0+).
+  /// [recordFramesTo] - append every raw preview frame to this file so the
+  /// session can be replayed for benchmarking (Android).
   static Future<String> scanBarcode(
     String lineColor,
     String cancelButtonText,
     bool isShowFlashIcon,
-    ScanMode scanMode,
-  ) async {
+    ScanMode scanMode, {
+    bool scanRegionOnly = false,
+    bool useCamera2 = false,
+    bool tiledScan = false,
+    List<BarcodeFormat>? formats,
+    Duration dedupWindow = const Duration(seconds: 2),
+    Duration dedupCooldown = Duration.zero,
+    String? recordFramesTo,
+  }) async {
     final params = <String, dynamic>{
       'lineColor': lineColor,
       'cancelButtonText': cancelButtonText.isEmpty ? 'Cancel' : cancelButtonText,
       'isShowFlashIcon': isShowFlashIcon,
       'isContinuousScan': false,
       'scanMode': scanMode.index,
+      'isScanRegionOnly': scanRegionOnly,
+      'useCamera2': useCamera2,
+      'isTiledScan': tiledScan,
+      'barcodeFormats': formats?.map((format) => format.name).toList(),
+      'dedupWindowMillis': dedupWindow.inMilliseconds,
+      'dedupCooldownMillis': dedupCooldown.inMilliseconds,
+      'recordFramesTo': recordFramesTo,
     };
 
     final barcodeResult =
@@ -41,29 +102,432 @@ class FlutterBarcodeScanner {
     return barcodeResult ?? '';
   }
 
+  /// Scan with the camera collecting every distinct code across consecutive
+  /// frames, e.g. all labels on a carton, and return them together (Android).
+  ///
+  /// Scanning stops once [targetCount] codes were found, once no new code has
+  /// appeared for [stableFrames] processed frames, or after [timeout],
+  /// whichever comes first; a [targetCount] or [stableFrames] of 0 disables
+  /// that condition. Returns an empty list if the user cancels. The other
+  /// arguments are those of [scanBarcode].
+  static Future<List<ScanResult>> scanBarcodes(
+    String lineColor,
+    String cancelButtonText,
+    bool isShowFlashIcon,
+    ScanMode scanMode, {
+    int targetCount = 0,
+    int stableFrames = 30,
+    Duration timeout = const Duration(seconds: 10),
+    bool scanRegionOnly = false,
+    bool useCamera2 = false,
+    bool tiledScan = false,
+    List<BarcodeFormat>? formats,
+    String? recordFramesTo,
+  }) async {
+    final params = <String, dynamic>{
+      'lineColor': lineColor,
+      'cancelButtonText': cancelButtonText.isEmpty ? 'Cancel' : cancelButtonText,
+      'isShowFlashIcon': isShowFlashIcon,
+      'isContinuousScan': false,
+      'isBatchCapture': true,
+      'captureTargetCount': targetCount,
+      'captureStableFrames': stableFrames,
+      'captureTimeoutMillis': timeout.inMilliseconds,
+      'scanMode': scanMode.index,
+      'isScanRegionOnly': scanRegionOnly,
+      'useCamera2': useCamera2,
+      'isTiledScan': tiledScan,
+      'barcodeFormats': formats?.map((format) => format.name).toList(),
+      'recordFramesTo': recordFramesTo,
+    };
+
+    final results = await _channel.invokeListMethod<dynamic>('scanBarcode', params);
+    return (results ?? const [])
+        .map((result) => ScanResult._fromMap(result as Map))
+        .toList();
+  }
+
+  /// Builds the detector and preview buffers ahead of the next scan and, with
+  /// [openCamera], opens the back camera if permission was already granted
+  /// (Android). Pass the same [scanMode] and [formats] as the upcoming scan so
+  /// the warm detector can be reused. Everything is released after
+  /// [idleTimeout] without a scan session.
+  static Future<bool> prepare({
+    ScanMode scanMode = ScanMode.DEFAULT,
+    List<BarcodeFormat>? formats,
+    bool openCamera = false,
+    Duration? idleTimeout,
+  }) async {
+    final prepared = await _channel.invokeMethod<bool>('prepare', <String, dynamic>{
+      'scanMode': scanMode.index,
+      'barcodeFormats': formats?.map((format) => format.name).toList(),
+      'openCamera': openCamera,
+      'idleTimeoutMillis': idleTimeout?.inMilliseconds,
+    });
+    return prepared ?? false;
+  }
+
+  /// Milliseconds from the last scan request to its first camera frame, or -1
+  /// if no frame has arrived yet (Android).
+  static Future<int> getTimeToFirstFrameMillis() async {
+    final millis = await _channel.invokeMethod<int>('getTimeToFirstFrame');
+    return millis ?? -1;
+  }
+
   /// Returns a continuous stream of barcode scans until the user cancels.
+  ///
+  /// Takes the same arguments as [scanBarcode], plus the size of the native
+  /// result queue and what it drops when Dart cannot keep up.
   static Stream<String> getBarcodeStreamReceiver(
     String lineColor,
     String cancelButtonText,
     bool isShowFlashIcon,
-    ScanMode scanMode,
-  ) {
+    ScanMode scanMode, {
+    bool scanRegionOnly = false,
+    bool useCamera2 = false,
+    bool tiledScan = false,
+    List<BarcodeFormat>? formats,
+    Duration dedupWindow = const Duration(seconds: 2),
+    Duration dedupCooldown = Duration.zero,
+    String? recordFramesTo,
+    int queueCapacity = 64,
+    OverflowPolicy overflowPolicy = OverflowPolicy.dropOldest,
+  }) {
     final params = <String, dynamic>{
       'lineColor': lineColor,
       'cancelButtonText': cancelButtonText.isEmpty ? 'Cancel' : cancelButtonText,
       'isShowFlashIcon': isShowFlashIcon,
       'isContinuousScan': true,
       'scanMode': scanMode.index,
+      'isScanRegionOnly': scanRegionOnly,
+      'useCamera2': useCamera2,
+      'isTiledScan': tiledScan,
+      'barcodeFormats': formats?.map((format) => format.name).toList(),
+      'dedupWindowMillis': dedupWindow.inMilliseconds,
+      'dedupCooldownMillis': dedupCooldown.inMilliseconds,
+      'recordFramesTo': recordFramesTo,
+      'queueCapacity': queueCapacity,
+      'overflowPolicy': overflowPolicy.name,
     };
 
     // Start scan in native
     _channel.invokeMethod('scanBarcode', params);
 
-    // Stream from native
-    _onBarcodeReceiver ??= _eventChannel
-        .receiveBroadcastStream()
-        .map((event) => event.toString());
+    return _barcodeStream;
+  }
+
+  /// Like [getBarcodeStreamReceiver], but delivers results with their format,
+  /// position and frame in batches collected over [batchWindow] or up to
+  /// [maxBatchSize] results. The stream closes when the user cancels (Android).
+  static Stream<List<ScanResult>> getBarcodeBatchStream(
+    String lineColor,
+    String cancelButtonText,
+    bool isShowFlashIcon,
+    ScanMode scanMode, {
+    bool scanRegionOnly = false,
+    bool useCamera2 = false,
+    bool tiledScan = false,
+    List<BarcodeFormat>? formats,
+    Duration dedupWindow = const Duration(seconds: 2),
+    Duration dedupCooldown = Duration.zero,
+    String? recordFramesTo,
+    Duration batchWindow = const Duration(milliseconds: 100),
+    int maxBatchSize = 32,
+    int queueCapacity = 64,
+    OverflowPolicy overflowPolicy = OverflowPolicy.dropOldest,
+  }) {
+    final params = <String, dynamic>{
+      'lineColor': lineColor,
+      'cancelButtonText': cancelButtonText.isEmpty ? 'Cancel' : cancelButtonText,
+      'isShowFlashIcon': isShowFlashIcon,
+      'isContinuousScan': true,
+      'scanMode': scanMode.index,
+      'isScanRegionOnly': scanRegionOnly,
+      'useCamera2': useCamera2,
+      'isTiledScan': tiledScan,
+      'barcodeFormats': formats?.map((format) => format.name).toList(),
+      'dedupWindowMillis': dedupWindow.inMilliseconds,
+      'dedupCooldownMillis': dedupCooldown.inMilliseconds,
+      'recordFramesTo': recordFramesTo,
+      'structuredResults': true,
+      'batchWindowMillis': batchWindow.inMilliseconds,
+      'batchMaxCount': maxBatchSize,
+      'queueCapacity': queueCapacity,
+      'overflowPolicy': overflowPolicy.name,
+    };
+
+    final batches = _batchStream;
+    _channel.invokeMethod('scanBarcode', params);
+    return batches;
+  }
+
+  /// Starts a scanner that renders into a Flutter [Texture] instead of opening
+  /// a separate screen (Android). Show it with [ScannerPreview] and read results
+  /// from [scannerResults], or from [scannerResultBatches] when
+  /// [structuredResults] is set; call [stopScanner] when done. Requires the
+  /// camera permission to be granted already.
+  static Future<ScannerTexture> startScanner({
+    ScanMode scanMode = ScanMode.DEFAULT,
+    List<BarcodeFormat>? formats,
+    bool useFrontCamera = false,
+    bool useCamera2 = false,
+    Duration dedupWindow = const Duration(seconds: 2),
+    Duration dedupCooldown = Duration.zero,
+    bool structuredResults = false,
+    Duration batchWindow = const Duration(milliseconds: 100),
+    int maxBatchSize = 32,
+    int queueCapacity = 64,
+    OverflowPolicy overflowPolicy = OverflowPolicy.dropOldest,
+  }) async {
+    final info = await _channel.invokeMapMethod<String, dynamic>('startScanner', <String, dynamic>{
+      'scanMode': scanMode.index,
+      'barcodeFormats': formats?.map((format) => format.name).toList(),
+      'useFrontCamera': useFrontCamera,
+      'useCamera2': useCamera2,
+      'dedupWindowMillis': dedupWindow.inMilliseconds,
+      'dedupCooldownMillis': dedupCooldown.inMilliseconds,
+      'structuredResults': structuredResults,
+      'batchWindowMillis': batchWindow.inMilliseconds,
+      'batchMaxCount': maxBatchSize,
+      'queueCapacity': queueCapacity,
+      'overflowPolicy': overflowPolicy.name,
+    });
+    return ScannerTexture._fromMap(info!);
+  }
+
+  /// Stops the scanner started with [startScanner] and releases its texture
+  /// (Android).
+  static Future<void> stopScanner() => _channel.invokeMethod<void>('stopScanner');
+
+  /// Numbers of continuous-scan results reported (`delivered`) and dropped as
+  /// duplicates (`suppressed`), and values currently remembered (`cached`)
+  /// (Android).
+  static Future<Map<String, int>> getDedupStats() async {
+    final stats = await _channel.invokeMapMethod<String, int>('getDedupStats');
+    return stats ?? const <String, int>{};
+  }
+
+  /// Decodes barcodes from image files instead of the camera (Android).
+  ///
+  /// [paths] may name JPEG/PNG/WebP/BMP files, raw NV21 dumps named
+  /// `*_<width>x<height>.nv21`, or directories containing them. Images larger
+  /// than [maxPixels] are downsampled while decoding, and [parallelism] files
+  /// are decoded at a time. One [ImageScanResult] is emitted per file as soon
+  /// as it is done; cancelling the subscription cancels the remaining files.
+  static Stream<ImageScanResult> scanImages(
+    List<String> paths, {
+    ScanMode scanMode = ScanMode.DEFAULT,
+    List<BarcodeFormat>? formats,
+    int maxPixels = 4000000,
+    int? parallelism,
+  }) {
+    final controller = StreamController<ImageScanResult>();
+    final pending = <Map>[];
+    int? jobId;
+    StreamSubscription<dynamic>? subscription;
+
+    void handle(Map event) {
+      if (event['jobId'] != jobId) return;
+      if (event['type'] == 'imageScanEnd') {
+        subscription?.cancel();
+        controller.close();
+      } else if (event['type'] == 'image') {
+        controller.add(ImageScanResult._fromMap(event));
+      }
+    }
+
+    controller.onListen = () async {
+      // Listen before starting so no per-file event can be missed.
+      subscription = _eventStream.listen((event) {
+        if (event is! Map) return;
+        if (jobId == null) {
+          pending.add(event);
+        } else {
+          handle(event);
+        }
+      });
+      try {
+        jobId = await _channel.invokeMethod<int>('scanImages', <String, dynamic>{
+          'paths': paths,
+          'scanMode': scanMode.index,
+          'barcodeFormats': formats?.map((format) => format.name).toList(),
+          'maxPixels': maxPixels,
+          'parallelism': parallelism,
+        });
+      } catch (error, stackTrace) {
+        controller.addError(error, stackTrace);
+        await subscription?.cancel();
+        await controller.close();
+        return;
+      }
+      pending.forEach(handle);
+      pending.clear();
+    };
+    controller.onCancel = () async {
+      await subscription?.cancel();
+      if (jobId != null) {
+        await _channel.invokeMethod<bool>('cancelImageScan', <String, dynamic>{'jobId': jobId});
+      }
+    };
+    return controller.stream;
+  }
+
+  /// Depth, capacity and delivered/dropped/coalesced counts of the native
+  /// result queue feeding the event channel (Android).
+  static Future<Map<String, dynamic>> getDeliveryStats() async {
+    final stats = await _channel.invokeMapMethod<String, dynamic>('getDeliveryStats');
+    return stats ?? const <String, dynamic>{};
+  }
+
+  /// Snapshot of the native scan pipeline (Android): `framesReceived`,
+  /// `framesProcessed`, `framesDropped`, `framesSkipped`, `framesThrottled`
+  /// (held back by the frame governor), `trackersCreated` and `trackersReused`
+  /// (per newly seen code), `deviceModel`, `sdkInt`, and under `stages` the
+  /// count, mean, p50, p90, p99 and max
+  /// milliseconds of `bufferWait`, `frameBuild`, `detect`, `dispatch`, `scan`
+  /// (frame arrival to dispatch) and `channelSend`. With [reset] the counters
+  /// start over after the snapshot is taken.
+  static Future<Map<String, dynamic>> getScanMetrics({bool reset = false}) async {
+    final metrics = await _channel.invokeMapMethod<String, dynamic>(
+        'getScanMetrics', <String, dynamic>{'reset': reset});
+    return metrics ?? const <String, dynamic>{};
+  }
+
+  /// Barcodes found by the scanner started with [startScanner].
+  static Stream<String> get scannerResults => _barcodeStream;
+
+  /// Result batches of a scanner started with `structuredResults: true`; the
+  /// stream closes when the scanner is stopped.
+  static Stream<List<ScanResult>> get scannerResultBatches => _batchStream;
+
+  /// Codes the user selected together by dragging a rectangle around them on
+  /// the preview of a continuous scan, one list per drag. Only codes whose
+  /// boxes lie entirely inside the rectangle are selected.
+  static Stream<List<ScanResult>> get barcodeSelections => _eventStream
+      .where((event) => event is Map && event['type'] == 'selection')
+      .map((event) => ((event as Map)['results'] as List)
+          .map((result) => ScanResult._fromMap(result as Map))
+          .toList());
+
+  static Stream<dynamic> get _eventStream =>
+      _events ??= _eventChannel.receiveBroadcastStream();
+
+  static Stream<String> get _barcodeStream =>
+      _eventStream.where((event) => event is! Map).map((event) => event.toString());
+
+  static Stream<List<ScanResult>> get _batchStream => _eventStream
+      .where((event) => event is Map)
+      .map((event) => event as Map)
+      .takeWhile((event) => event['type'] != 'end')
+      .where((event) => event['type'] == 'batch')
+      .map((event) => (event['results'] as List)
+          .map((result) => ScanResult._fromMap(result as Map))
+          .toList());
+}
+
+/// A barcode reported through a structured result stream.
+class ScanResult {
+  const ScanResult._(this.format, this.value, this.boundingBox, this.cornerPoints,
+      this.frameId, this.timestampMillis);
+
+  factory ScanResult._fromMap(Map map) => ScanResult._(
+        map['format'] as int,
+        map['value'] as Uint8List,
+        map['bbox'] as Int32List?,
+        map['corners'] as Int32List?,
+        map['frameId'] as int,
+        map['timestampMillis'] as int,
+      );
+
+  /// Format bit as reported by the detector; see [barcodeFormat].
+  final int format;
+
+  /// Raw payload bytes.
+  final Uint8List value;
+
+  /// Bounding box as left, top, right, bottom in preview pixels.
+  final Int32List? boundingBox;
+
+  /// Corner points as x0, y0, x1, y1, ... in preview pixels.
+  final Int32List? cornerPoints;
+
+  /// Id of the camera frame the code was found in, or -1.
+  final int frameId;
+
+  /// Capture time of that frame in milliseconds, relative to the start of the
+  /// camera session.
+  final int timestampMillis;
+
+  /// The payload decoded as UTF-8.
+  String get text => utf8.decode(value, allowMalformed: true);
+
+  BarcodeFormat? get barcodeFormat {
+    for (final candidate in BarcodeFormat.values) {
+      if (format == 1 << candidate.index) return candidate;
+    }
+    return null;
+  }
+}
+
+/// Barcodes found in one file by [FlutterBarcodeScanner.scanImages].
+class ImageScanResult {
+  const ImageScanResult._(this.index, this.path, this.results, this.error);
+
+  factory ImageScanResult._fromMap(Map map) => ImageScanResult._(
+        map['index'] as int,
+        map['path'] as String,
+        ((map['results'] as List?) ?? const [])
+            .map((result) => ScanResult._fromMap(result as Map))
+            .toList(),
+        map['error'] as String?,
+      );
+
+  /// Position of the file in the expanded input list.
+  final int index;
+  final String path;
+  final List<ScanResult> results;
+
+  /// Why the file could not be decoded, or null.
+  final String? error;
+}
+
+/// Texture and preview geometry of a scanner started with
+/// [FlutterBarcodeScanner.startScanner].
+class ScannerTexture {
+  const ScannerTexture._(this.textureId, this.previewWidth, this.previewHeight, this.quarterTurns);
+
+  factory ScannerTexture._fromMap(Map<String, dynamic> map) => ScannerTexture._(
+        map['textureId'] as int,
+        map['previewWidth'] as int,
+        map['previewHeight'] as int,
+        map['quarterTurns'] as int,
+      );
+
+  final int textureId;
+  final int previewWidth;
+  final int previewHeight;
+
+  /// Clockwise quarter turns that bring the camera image upright.
+  final int quarterTurns;
+}
+
+/// Displays the camera preview of a [ScannerTexture] upright at its aspect ratio.
+class ScannerPreview extends StatelessWidget {
+  const ScannerPreview({super.key, required this.texture});
+
+  final ScannerTexture texture;
 
-    return _onBarcodeReceiver!;
+  @override
+  Widget build(BuildContext context) {
+    final aspectRatio = texture.previewHeight == 0
+        ? 1.0
+        : texture.previewWidth / texture.previewHeight;
+    return RotatedBox(
+      quarterTurns: texture.quarterTurns,
+      child: AspectRatio(
+        aspectRatio: aspectRatio,
+        child: Texture(textureId: texture.textureId),
+      ),
+    );
   }
 }